@@ -0,0 +1,82 @@
+package MAIN;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Cost of recording the invocations of each file, of merging per-file results into the store and of turning the
+// counts into coupling metrics
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AggregationBenchmark {
+
+    @Param({ "100", "1000", "10000", "50000" })
+    public int classes;
+
+    private List<List<String[]>> invocations;
+    private List<FileAnalysis> analyses;
+    private CouplingStore store;
+
+    @Setup
+    public void setUp() {
+        SyntheticProject project = new SyntheticProject(classes, 10, 5, 42);
+        invocations = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            invocations.add(project.invocations(i));
+        }
+        analyses = project.fileAnalyses();
+        store = buildStore();
+    }
+
+    private CouplingStore buildStore() {
+        CouplingStore result = new CouplingStore();
+        for (FileAnalysis analysis : analyses) {
+            result.add(analysis);
+        }
+        return result;
+    }
+
+    // Class couplings recorded by the visitor, one FileAnalysis per class (default parser settings)
+    @Benchmark
+    public List<FileAnalysis> recordInvocations() {
+        return record(false);
+    }
+
+    // Same with the method-to-method calls of Parser.setRecordMethodCalls(true)
+    @Benchmark
+    public List<FileAnalysis> recordInvocationsWithMethodCalls() {
+        return record(true);
+    }
+
+    private List<FileAnalysis> record(boolean methodCalls) {
+        List<FileAnalysis> result = new ArrayList<>(classes);
+        for (List<String[]> file : invocations) {
+            FileAnalysis analysis = new FileAnalysis();
+            SyntheticProject.record(analysis, file, methodCalls);
+            result.add(analysis);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public CouplingStore mergeFileAnalyses() {
+        return buildStore();
+    }
+
+    @Benchmark
+    public CouplingGraph couplingGraph() {
+        return store.toGraph();
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Double>> couplingMetricsMap() {
+        return store.toGraph().toMetricsMap();
+    }
+}
@@ -0,0 +1,38 @@
+package MAIN;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Runs the JMH benchmarks (same command line as org.openjdk.jmh.Main) and prints the results as JSON.
+// Results go to jmh-result.json unless -rf / -rff say otherwise, so runs can be compared across releases.
+public class BenchmarkMain {
+
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        String resultFile = commandLine.getResult().orElse(DEFAULT_RESULT_FILE);
+        options.result(resultFile);
+
+        new Runner(options.build()).run();
+
+        Path results = Paths.get(resultFile);
+        if (Files.exists(results) && resultFile.endsWith(".json")) {
+            System.out.println(Files.readString(results));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package MAIN;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Scaling of the agglomerative clustering with the number of classes.
+// The pairwise matrices grow as n^2, so sizes stop at 5,000 classes.
+// agglomerativeClustering times a whole run (matrices and heap included); mergeLoop only the merges, on an
+// engine built before each invocation. -prof gc still counts the allocation of that setup (the n^2 matrices),
+// the allocation of the merge loop alone is checked by AgglomerativeClusteringTest.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ClusteringBenchmark {
+
+    @Param({ "100", "1000", "5000" })
+    public int classes;
+
+    @Param({ "0.0001" })
+    public double cp;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    private CouplingGraph graph;
+
+    @Setup
+    public void setUp() {
+        CouplingStore store = new CouplingStore();
+        for (FileAnalysis analysis : new SyntheticProject(classes, 10, 5, 42).fileAnalyses()) {
+            store.add(analysis);
+        }
+        graph = store.toGraph();
+    }
+
+    // Engine with its initial matrices and candidate heap, rebuilt outside of the measurement for every run
+    @State(Scope.Thread)
+    public static class Engine {
+        AgglomerativeClustering engine;
+
+        @Setup(Level.Invocation)
+        public void build(ClusteringBenchmark benchmark) {
+            engine = new AgglomerativeClustering(benchmark.graph, benchmark.parallel ? ForkJoinPool.commonPool() : null);
+        }
+    }
+
+    @Benchmark
+    public int[] agglomerativeClustering() {
+        return new AgglomerativeClustering(graph, parallel ? ForkJoinPool.commonPool() : null).run(cp, graph.size() / 2, null);
+    }
+
+    @Benchmark
+    public int[] mergeLoop(Engine engine) {
+        return engine.engine.run(cp, graph.size() / 2, null);
+    }
+}
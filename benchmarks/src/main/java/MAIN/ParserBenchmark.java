@@ -0,0 +1,45 @@
+package MAIN;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-file cost of building the AST and of running the coupling visitor over it
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({ "5", "20", "100" })
+    public int methodsPerClass;
+
+    private Parser parser;
+    private String source;
+    private CompilationUnit compilationUnit;
+
+    @Setup
+    public void setUp() {
+        parser = new Parser();
+        source = new SyntheticProject(1000, methodsPerClass, 5, 42).classSource(500);
+        compilationUnit = parser.parseCompilationUnit(source);
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return parser.parseCompilationUnit(source);
+    }
+
+    @Benchmark
+    public FileAnalysis visit() {
+        return parser.analyzeCompilationUnit(compilationUnit);
+    }
+
+    @Benchmark
+    public FileAnalysis parseAndVisit() {
+        return parser.parseClassSource(source);
+    }
+}
@@ -0,0 +1,59 @@
+package MAIN;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Whole-project analysis from disk (walk, read, pre-filter, parse, merge), sequential against parallel workers and
+// with the pre-filter on and off. Without calls every file can skip its method bodies, with calls none can, which
+// bounds what the pre-filter saves and what its scan costs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProjectBenchmark {
+
+    @Param({ "1000" })
+    public int classes;
+
+    @Param({ "0", "5" })
+    public int callsPerMethod;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "true", "false" })
+    public boolean prefilter;
+
+    private Path root;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = new SyntheticProject(classes, 10, callsPerMethod, 42).writeTo(Files.createTempDirectory("synthetic-project"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public CouplingStore analyzeProject() {
+        Parser parser = new Parser();
+        parser.setPrefilter(prefilter);
+        parser.analyzePaths(Collections.singletonList(root), threads, null);
+        return parser.getStore();
+    }
+}
@@ -0,0 +1,109 @@
+package MAIN;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// Generates Java projects of a given size for the benchmarks.
+// Every class C<i> has a few methods calling static methods of other classes (C<k>.m<j>()),
+// most calls go to nearby classes so that the coupling graph has a module-like structure.
+public class SyntheticProject {
+
+    private final int classes;
+    private final int methodsPerClass;
+    private final int callsPerMethod;
+    private final long seed;
+
+    public SyntheticProject(int classes, int methodsPerClass, int callsPerMethod, long seed) {
+        this.classes = classes;
+        this.methodsPerClass = methodsPerClass;
+        this.callsPerMethod = callsPerMethod;
+        this.seed = seed;
+    }
+
+    public static String className(int index) {
+        return "C" + index;
+    }
+
+    // Source code of class C<index>, the same for a given seed
+    public String classSource(int index) {
+        Random random = new Random(seed * 31 + index);
+        StringBuilder source = new StringBuilder(256 + methodsPerClass * callsPerMethod * 24);
+        source.append("package synthetic.module").append(index / 50).append(";\n\n");
+        source.append("public class ").append(className(index)).append(" {\n\n");
+        source.append("    private int state;\n\n");
+        for (int m = 0; m < methodsPerClass; m++) {
+            source.append("    public static int m").append(m).append("() {\n");
+            source.append("        int result = 0;\n");
+            for (int c = 0; c < callsPerMethod; c++) {
+                source.append("        result += ").append(className(target(index, random)))
+                        .append(".m").append(random.nextInt(methodsPerClass)).append("();\n");
+            }
+            source.append("        return result;\n");
+            source.append("    }\n\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    // Invocations of class C<index> in source order, as { caller class, caller method, called class, called method }
+    public List<String[]> invocations(int index) {
+        Random random = new Random(seed * 31 + index);
+        List<String[]> invocations = new ArrayList<>(methodsPerClass * callsPerMethod);
+        for (int m = 0; m < methodsPerClass; m++) {
+            for (int c = 0; c < callsPerMethod; c++) {
+                String called = className(target(index, random));
+                invocations.add(new String[] { className(index), "m" + m, called, "m" + random.nextInt(methodsPerClass) });
+            }
+        }
+        return invocations;
+    }
+
+    // Coupling and method call results as the visitor would produce them, without running the parser
+    public List<FileAnalysis> fileAnalyses() {
+        List<FileAnalysis> analyses = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            FileAnalysis analysis = new FileAnalysis();
+            record(analysis, invocations(i), true);
+            Set<String> methods = new HashSet<>();
+            for (int m = 0; m < methodsPerClass; m++) {
+                methods.add("m" + m);
+            }
+            analysis.classMethodsMap.put(className(i), methods);
+            analysis.userDefinedClasses.add(className(i));
+            analyses.add(analysis);
+        }
+        return analyses;
+    }
+
+    // What the visitor does for every invocation of a user-defined class (see Parser.setRecordMethodCalls)
+    public static void record(FileAnalysis analysis, List<String[]> invocations, boolean methodCalls) {
+        for (String[] invocation : invocations) {
+            analysis.recordCoupling(invocation[0], invocation[2]);
+            if (methodCalls) {
+                analysis.recordMethodCall(invocation[0], invocation[1], invocation[2], invocation[3]);
+            }
+        }
+    }
+
+    // Write the project as one file per class under root/synthetic/module<k>/
+    public Path writeTo(Path root) throws IOException {
+        for (int i = 0; i < classes; i++) {
+            Path dir = root.resolve("synthetic").resolve("module" + (i / 50));
+            Files.createDirectories(dir);
+            Files.write(dir.resolve(className(i) + ".java"), classSource(i).getBytes(StandardCharsets.UTF_8));
+        }
+        return root;
+    }
+
+    // 80% of the calls stay within the same block of 50 classes
+    private int target(int index, Random random) {
+        if (random.nextInt(10) < 8) {
+            int base = (index / 50) * 50;
+            return Math.min(classes - 1, base + random.nextInt(50));
+        }
+        return random.nextInt(classes);
+    }
+}
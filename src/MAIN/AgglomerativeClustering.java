@@ -0,0 +1,409 @@
+package MAIN;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Agglomerative clustering engine used by HierarchicalClustering.performClustering.
+//
+// The average coupling between two clusters is sum(coupling(a, b)) / count(coupled pairs (a, b)).
+// Both terms are kept in an upper-triangular matrix indexed by cluster, and merging B into A is the
+// Lance-Williams update S(A+B, K) = S(A, K) + S(B, K), C(A+B, K) = C(A, K) + C(B, K), in O(n) per merge.
+// Candidate pairs live in a primitive max-heap with lazy deletion, giving O(n^2 log n) overall instead of
+// rescanning every pair of clusters at each step. A sequential run allocates nothing per merge or per lookup.
+//
+// A cluster is identified by the smallest node index it contains, which is also its position in the
+// cluster list of the original algorithm. Ties are broken like the original scan: highest coupling first,
+// then smallest first cluster, then smallest second cluster.
+//
+// With a ForkJoinPool, the initial matrix is filled by row tiles of the upper triangle with about TILE_CELLS
+// cells each, and the row updates of merges on more than PARALLEL_MERGE_MIN clusters are split into chunks. Every cell is still computed by the same
+// operations in the same order and the heap order is total, so the merges are exactly those of a sequential run.
+class AgglomerativeClustering {
+
+    private static final int TILE_CELLS = 1 << 20; // Cells of the triangular matrix per initial tile
+    private static final int MERGE_CHUNK = 1 << 10; // Clusters per task in a row update
+    private static final int PARALLEL_MERGE_MIN = 4 * MERGE_CHUNK; // Smaller row updates stay on the calling thread
+
+    interface MergeListener {
+        // clusterB was merged into clusterA; forced is true for merges done to respect the M/2 module limit
+        void onMerge(int clusterA, int clusterB, double coupling, boolean forced);
+    }
+
+    // Binary max-heap of candidate pairs stored in parallel primitive arrays, so pushing a pair allocates
+    // nothing once the arrays have grown to their working size.
+    // Order: highest coupling first, then smallest first cluster, then smallest second cluster.
+    private static final class PairHeap {
+        private double[] coupling = new double[64];
+        private int[] first = new int[64];
+        private int[] second = new int[64];
+        private int size = 0;
+        private long grownBytes = 0; // Allocated by ensureCapacity, the only allocation of a sequential merge loop
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double topCoupling() {
+            return coupling[0];
+        }
+
+        int topFirst() {
+            return first[0];
+        }
+
+        int topSecond() {
+            return second[0];
+        }
+
+        void add(double value, int a, int b) {
+            ensureCapacity(size + 1);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(value, a, b, parent)) {
+                    break;
+                }
+                set(i, coupling[parent], first[parent], second[parent]);
+                i = parent;
+            }
+            set(i, value, a, b);
+        }
+
+        // Add pairs without ordering them, heapify() must be called before the heap is used again
+        void append(double[] values, int[] as, int[] bs, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(values, 0, coupling, size, length);
+            System.arraycopy(as, 0, first, size, length);
+            System.arraycopy(bs, 0, second, size, length);
+            size += length;
+        }
+
+        // Bottom-up heap construction, O(size)
+        void heapify() {
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i, coupling[i], first[i], second[i]);
+            }
+        }
+
+        void removeTop() {
+            size--;
+            if (size == 0) {
+                return;
+            }
+            siftDown(0, coupling[size], first[size], second[size]);
+        }
+
+        private void siftDown(int i, double value, int a, int b) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(coupling[child + 1], first[child + 1], second[child + 1], child)) {
+                    child++;
+                }
+                if (!isBefore(coupling[child], first[child], second[child], value, a, b)) {
+                    break;
+                }
+                set(i, coupling[child], first[child], second[child]);
+                i = child;
+            }
+            set(i, value, a, b);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > coupling.length) {
+                int newCapacity = Math.max(capacity, coupling.length * 2);
+                coupling = Arrays.copyOf(coupling, newCapacity);
+                first = Arrays.copyOf(first, newCapacity);
+                second = Arrays.copyOf(second, newCapacity);
+                grownBytes += 16L * newCapacity;
+            }
+        }
+
+        private boolean before(double value, int a, int b, int slot) {
+            return isBefore(value, a, b, coupling[slot], first[slot], second[slot]);
+        }
+
+        private static boolean isBefore(double value, int a, int b, double otherValue, int otherA, int otherB) {
+            if (value != otherValue) {
+                return value > otherValue;
+            }
+            return a != otherA ? a < otherA : b < otherB;
+        }
+
+        private void set(int slot, double value, int a, int b) {
+            coupling[slot] = value;
+            first[slot] = a;
+            second[slot] = b;
+        }
+    }
+
+    private final int n;
+    private final double[] sum;   // S(a, b) for a < b
+    private final int[] count;    // C(a, b) for a < b
+    private final boolean[] active;
+    private final int[] clusterOf; // Representative of the cluster of each node, filled in at the end
+    private final int[] nextMember; // Linked list of the nodes of each cluster, -1 terminated
+    private final int[] lastMember;
+    private final PairHeap heap = new PairHeap();
+    private final ForkJoinPool pool; // null for a sequential run
+    private double[] rowCoupling; // New average coupling of each cluster with the merged one, -1 if none (parallel merges)
+    private int activeCount;
+
+    // Pair selected by best()
+    private int bestA;
+    private int bestB;
+    private double bestCoupling;
+
+    AgglomerativeClustering(CouplingGraph graph) {
+        this(graph, null);
+    }
+
+    // With a pool, the initial matrix and the row updates of large merges are computed on its threads
+    AgglomerativeClustering(CouplingGraph graph, ForkJoinPool pool) {
+        n = graph.size();
+        long cells = (long) n * (n - 1) / 2;
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many classes for the pairwise coupling matrix: " + n);
+        }
+        this.pool = pool;
+        sum = new double[(int) cells];
+        count = new int[(int) cells];
+        active = new boolean[n];
+        clusterOf = new int[n];
+        nextMember = new int[n];
+        lastMember = new int[n];
+        for (int node = 0; node < n; node++) {
+            active[node] = true;
+            nextMember[node] = -1;
+            lastMember[node] = node;
+        }
+        activeCount = n;
+
+        // Tiles are horizontal strips of the upper triangle; each one writes only its own rows
+        List<InitialTile> tiles = new ArrayList<>();
+        int firstRow = 0;
+        long tileCells = 0;
+        for (int a = 0; a < n; a++) {
+            tileCells += n - a - 1;
+            if (tileCells >= TILE_CELLS || a == n - 1) {
+                tiles.add(new InitialTile(graph, firstRow, a + 1));
+                firstRow = a + 1;
+                tileCells = 0;
+            }
+        }
+        if (pool != null && tiles.size() > 1) {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tiles);
+                }
+            });
+        } else {
+            for (InitialTile tile : tiles) {
+                tile.compute();
+            }
+        }
+        for (InitialTile tile : tiles) {
+            heap.append(tile.values, tile.firsts, tile.seconds, tile.size);
+        }
+        heap.heapify();
+    }
+
+    // Singleton clusters of rows [firstRow, endRow): S(a, b) is the coupling a -> b when it exists.
+    // Only the coupled cells are visited (from the graph rows), the others stay at 0 and are not candidates.
+    @SuppressWarnings("serial") // Fork/join task, never serialized
+    private final class InitialTile extends RecursiveAction {
+        private final CouplingGraph graph;
+        private final int firstRow;
+        private final int endRow;
+        double[] values = new double[16];
+        int[] firsts = new int[16];
+        int[] seconds = new int[16];
+        int size = 0;
+
+        InitialTile(CouplingGraph graph, int firstRow, int endRow) {
+            this.graph = graph;
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        protected void compute() {
+            for (int a = firstRow; a < endRow; a++) {
+                for (int position = graph.neighborStart(a); position < graph.neighborEnd(a); position++) {
+                    int b = graph.neighbor(position);
+                    if (b > a) {
+                        int cell = cell(a, b);
+                        sum[cell] += graph.weightAt(position);
+                        count[cell]++;
+                        add(sum[cell] / count[cell], a, b);
+                    }
+                }
+            }
+        }
+
+        private void add(double value, int a, int b) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                firsts = Arrays.copyOf(firsts, size * 2);
+                seconds = Arrays.copyOf(seconds, size * 2);
+            }
+            values[size] = value;
+            firsts[size] = a;
+            seconds[size] = b;
+            size++;
+        }
+    }
+
+    // Merge while the best average coupling is above CP, then keep merging until at most maxModules remain.
+    // Returns the representative cluster of every node.
+    int[] run(double CP, int maxModules, MergeListener listener) {
+        while (activeCount > 1) {
+            best();
+            if (bestCoupling <= CP) {
+                break;
+            }
+            merge(false, listener);
+        }
+        while (activeCount > maxModules && activeCount > 1) {
+            best();
+            merge(true, listener);
+        }
+
+        for (int a = 0; a < n; a++) {
+            if (active[a]) {
+                for (int node = a; node != -1; node = nextMember[node]) {
+                    clusterOf[node] = a;
+                }
+            }
+        }
+        return clusterOf;
+    }
+
+    int activeCount() {
+        return activeCount;
+    }
+
+    // Bytes allocated so far to grow the candidate heap (used by the allocation test)
+    long heapGrowthBytes() {
+        return heap.grownBytes;
+    }
+
+    // Select the highest average coupling among the active clusters into bestA, bestB, bestCoupling.
+    // When no coupled pair is left every pair averages 0, and the first pair in list order wins.
+    private void best() {
+        while (!heap.isEmpty()) {
+            int a = heap.topFirst();
+            int b = heap.topSecond();
+            if (active[a] && active[b]) {
+                int cell = cell(a, b);
+                if (count[cell] > 0 && sum[cell] / count[cell] == heap.topCoupling()) {
+                    bestA = a;
+                    bestB = b;
+                    bestCoupling = heap.topCoupling();
+                    return;
+                }
+            }
+            heap.removeTop(); // Stale entry, one of the clusters changed since it was pushed
+        }
+        bestA = nextActive(0);
+        bestB = nextActive(bestA + 1);
+        bestCoupling = 0;
+    }
+
+    private int nextActive(int from) {
+        int cluster = from;
+        while (!active[cluster]) {
+            cluster++;
+        }
+        return cluster;
+    }
+
+    // Merge bestB into bestA
+    private void merge(boolean forced, MergeListener listener) {
+        int a = bestA;
+        int b = bestB;
+        if (listener != null) {
+            listener.onMerge(a, b, bestCoupling, forced);
+        }
+
+        active[b] = false;
+        activeCount--;
+        nextMember[lastMember[a]] = b;
+        lastMember[a] = lastMember[b];
+
+        if (pool != null && n >= PARALLEL_MERGE_MIN) {
+            if (rowCoupling == null) {
+                rowCoupling = new double[n];
+            }
+            pool.invoke(new RowUpdate(a, b, 0, n));
+            for (int k = 0; k < n; k++) {
+                if (rowCoupling[k] >= 0) {
+                    heap.add(rowCoupling[k], Math.min(a, k), Math.max(a, k));
+                }
+            }
+        } else {
+            for (int k = 0; k < n; k++) {
+                if (!active[k] || k == a) {
+                    continue;
+                }
+                double coupling = mergeCell(a, b, k);
+                if (coupling >= 0) {
+                    heap.add(coupling, Math.min(a, k), Math.max(a, k));
+                }
+            }
+        }
+    }
+
+    // Add S(b, k), C(b, k) into S(a, k), C(a, k); returns the new average coupling of (a, k), or -1 when b and k
+    // are not coupled
+    private double mergeCell(int a, int b, int k) {
+        int from = cell(Math.min(b, k), Math.max(b, k));
+        if (count[from] == 0) {
+            return -1;
+        }
+        int to = cell(Math.min(a, k), Math.max(a, k));
+        sum[to] += sum[from];
+        count[to] += count[from];
+        return sum[to] / count[to];
+    }
+
+    // Row update of a merge for the clusters [from, to), split in chunks of MERGE_CHUNK; each k touches its own cells
+    @SuppressWarnings("serial") // Fork/join task, never serialized
+    private final class RowUpdate extends RecursiveAction {
+        private final int a;
+        private final int b;
+        private final int from;
+        private final int to;
+
+        RowUpdate(int a, int b, int from, int to) {
+            this.a = a;
+            this.b = b;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MERGE_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowUpdate(a, b, from, middle), new RowUpdate(a, b, middle, to));
+                return;
+            }
+            for (int k = from; k < to; k++) {
+                rowCoupling[k] = active[k] && k != a ? mergeCell(a, b, k) : -1;
+            }
+        }
+    }
+
+    // Index of the pair (a, b), a < b, in the packed upper-triangular matrices
+    private int cell(int a, int b) {
+        return (int) ((long) a * (2L * n - a - 1) / 2 + (b - a - 1));
+    }
+}
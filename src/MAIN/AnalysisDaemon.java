@@ -0,0 +1,458 @@
+package MAIN;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+// Resident analysis service: the project is parsed once, then the directory tree is watched and only the
+// changed compilation units are parsed again. The FileAnalysis of every file is kept, so a change is applied
+// to the CouplingStore as remove(old) + add(new) and the counts stay exact without a full re-analysis.
+// The coupling graph, method call graph and clusters are rebuilt lazily, on the first query after a change.
+// A file that cannot be read or parsed keeps the counts of its last good version and is listed as failed in
+// /status until it parses again.
+//
+// Results are served as JSON on localhost:
+//   GET /status
+//   GET /coupling?class=A[&to=B]
+//   GET /clusters
+//   GET /method?name=Class%23method   ('#' encoded)
+public class AnalysisDaemon implements Closeable {
+
+    public static final int DEFAULT_PORT = 8642;
+    private static final long DEBOUNCE_MILLIS = 50; // Events closer than this are applied as one batch
+
+    private final Path root;
+    private final int threads;
+    private final ClusteringStrategy strategy;
+    private final Parser parser = new Parser();
+    private final CouplingStore store = parser.getStore();
+    private final Map<Path, FileAnalysis> analyses = new ConcurrentHashMap<>(); // Current analysis of every file
+    private final Set<Path> failedFiles = ConcurrentHashMap.newKeySet(); // Files whose last version did not parse
+    private final AtomicLong version = new AtomicLong(); // Incremented after each batch of changes
+    private volatile long lastUpdateMillis;
+    private volatile Snapshot snapshot;
+
+    private WatchService watcher;
+    private HttpServer server;
+    private Thread watchThread;
+
+    // Derived views of one version of the store, each computed on first use
+    private final class Snapshot {
+        final long version;
+        private CouplingGraph graph;
+        private MethodCallGraph methods;
+        private ClusteringResult clusters;
+
+        Snapshot(long version) {
+            this.version = version;
+        }
+
+        synchronized CouplingGraph graph() {
+            if (graph == null) {
+                graph = store.toGraph();
+            }
+            return graph;
+        }
+
+        synchronized MethodCallGraph methods() {
+            if (methods == null) {
+                methods = store.toMethodCallGraph();
+            }
+            return methods;
+        }
+
+        synchronized ClusteringResult clusters() {
+            if (clusters == null) {
+                clusters = strategy.cluster(graph());
+            }
+            return clusters;
+        }
+    }
+
+    public AnalysisDaemon(Path root, int threads) {
+        this(root, threads, new LouvainClustering());
+    }
+
+    public AnalysisDaemon(Path root, int threads, ClusteringStrategy strategy) {
+        this.root = root.toAbsolutePath().normalize();
+        this.threads = Math.max(1, threads);
+        this.strategy = strategy;
+        parser.setRecordMethodCalls(true); // Served by /method
+    }
+
+    public CouplingStore getStore() {
+        return store;
+    }
+
+    // Port the queries are served on (useful when started with port 0)
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Parse the whole project, then start watching it and serving queries on localhost:port
+    public void start(int port) throws IOException {
+        long start = System.currentTimeMillis();
+        watcher = root.getFileSystem().newWatchService();
+        loadTree(root); // Directories are registered before their files are read, so no change is missed
+        version.incrementAndGet();
+        lastUpdateMillis = System.currentTimeMillis();
+        System.out.println("Analyzed " + analyses.size() + " files in " + (lastUpdateMillis - start) + " ms");
+
+        watchThread = new Thread(this::watchLoop, "coupling-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        // Headers and body are separate writes, without TCP_NODELAY each answer waits for a delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/status", exchange -> respond(exchange, status()));
+        server.createContext("/coupling", exchange -> respond(exchange, coupling(query(exchange))));
+        server.createContext("/clusters", exchange -> respond(exchange, clusters()));
+        server.createContext("/method", exchange -> respond(exchange, method(query(exchange))));
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        System.out.println("Serving coupling queries on http://localhost:" + server.getAddress().getPort() + "/status");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdownNow();
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    // Register every directory under dir with the watcher and (re-)parse its Java files on a pool of workers.
+    // The workers add and remove analyses concurrently, which CouplingStore supports for different files.
+    private void loadTree(Path dir) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                    directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (isJavaFile(file)) {
+                        executor.execute(() -> update(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    e.printStackTrace();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isJavaFile(Path file) {
+        return file.getFileName() != null && file.getFileName().toString().endsWith(".java");
+    }
+
+    // Wait for file system events, group the events of a burst (save, checkout) and apply them together
+    private void watchLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> created = new HashSet<>(); // Only a created (or moved in) directory has to be walked
+                boolean overflow = false;
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            Path path = directory.resolve((Path) event.context());
+                            changed.add(path);
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                                created.add(path);
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        changed.add(directory); // The directory itself is gone
+                    }
+                    key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                long start = System.currentTimeMillis();
+                if (overflow) {
+                    rescan();
+                } else {
+                    apply(changed, created);
+                }
+                version.incrementAndGet();
+                lastUpdateMillis = System.currentTimeMillis();
+                System.out.println("Applied " + changed.size() + " changes in " + (lastUpdateMillis - start) + " ms");
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Daemon stopped
+        }
+    }
+
+    private void apply(Set<Path> changed, Set<Path> created) {
+        for (Path path : changed) {
+            if (Files.isDirectory(path)) {
+                if (created.contains(path)) {
+                    try {
+                        loadTree(path); // New directory, or one that was moved in
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            } else if (isJavaFile(path)) {
+                update(path);
+            } else if (!Files.exists(path)) {
+                removeUnder(path);
+            }
+        }
+    }
+
+    // Events were lost: parse everything again and drop the files that disappeared
+    private void rescan() {
+        removeUnder(root, path -> !Files.isRegularFile(path));
+        try {
+            loadTree(root);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void removeUnder(Path directory) {
+        removeUnder(directory, path -> true);
+    }
+
+    private void removeUnder(Path directory, Predicate<Path> condition) {
+        for (Path path : new ArrayList<>(analyses.keySet())) {
+            if (path.startsWith(directory) && condition.test(path)) {
+                update(path);
+            }
+        }
+        failedFiles.removeIf(path -> path.startsWith(directory) && condition.test(path));
+    }
+
+    // Bring the store in line with the current content of one file (parsed again, or removed if deleted).
+    // The new analysis is added before the old one is removed, so classes declared by both never disappear.
+    // A file that exists but cannot be read or parsed (including a JDT crash) is reported and counted as in
+    // Parser.analyzeAndMerge, and keeps its previous analysis.
+    private void update(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        FileAnalysis fresh = null;
+        if (Files.isRegularFile(path)) {
+            try {
+                fresh = parser.parseFile(path);
+            } catch (IOException | RuntimeException e) {
+                if (Files.isRegularFile(path)) {
+                    parser.getMetrics().recordFailedFile();
+                    failedFiles.add(path);
+                    System.err.println("Failed to analyze " + path);
+                    e.printStackTrace();
+                    return;
+                }
+                // Deleted while being read: removed below
+            }
+        }
+        failedFiles.remove(path);
+        if (fresh != null) {
+            store.add(fresh);
+        }
+        FileAnalysis old;
+        synchronized (analyses) {
+            old = fresh != null ? analyses.put(path, fresh) : analyses.remove(path);
+        }
+        if (old != null) {
+            store.remove(old);
+        }
+    }
+
+    private Snapshot snapshot() {
+        long current = version.get();
+        Snapshot view = snapshot;
+        if (view == null || view.version != current) {
+            synchronized (this) {
+                view = snapshot;
+                if (view == null || view.version != current) {
+                    view = new Snapshot(current);
+                    snapshot = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    private String status() {
+        return "{\"root\":" + quote(root.toString())
+                + ",\"files\":" + analyses.size()
+                + ",\"failed\":" + failedFiles.size()
+                + ",\"classes\":" + store.getUserDefinedClasses().size()
+                + ",\"invocations\":" + store.getTotalCouplingCount()
+                + ",\"version\":" + version.get()
+                + ",\"lastUpdateMillis\":" + lastUpdateMillis + "}";
+    }
+
+    private String coupling(Map<String, String> query) {
+        CouplingGraph graph = snapshot().graph();
+        int from = graph.indexOf(query.getOrDefault("class", ""));
+        if (from < 0) {
+            return null;
+        }
+        if (query.containsKey("to")) {
+            int to = graph.indexOf(query.get("to"));
+            return "{\"from\":" + quote(graph.name(from)) + ",\"to\":" + quote(query.get("to"))
+                    + ",\"coupling\":" + (to < 0 ? 0 : graph.weight(from, to)) + "}";
+        }
+        StringBuilder json = new StringBuilder("{\"class\":").append(quote(graph.name(from))).append(",\"coupling\":{");
+        for (int position = graph.neighborStart(from); position < graph.neighborEnd(from); position++) {
+            if (position > graph.neighborStart(from)) {
+                json.append(',');
+            }
+            json.append(quote(graph.name(graph.neighbor(position)))).append(':').append(graph.weightAt(position));
+        }
+        return json.append("}}").toString();
+    }
+
+    private String clusters() {
+        Snapshot view = snapshot();
+        ClusteringResult result = view.clusters();
+        StringBuilder json = new StringBuilder("{\"version\":").append(view.version)
+                .append(",\"modularity\":").append(result.getModularity()).append(",\"clusters\":[");
+        List<HierarchicalClustering.Cluster> clusters = result.getClusters();
+        for (int cluster = 0; cluster < clusters.size(); cluster++) {
+            json.append(cluster > 0 ? ",[" : "[");
+            int[] members = clusters.get(cluster).members;
+            for (int i = 0; i < members.length; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append(quote(view.graph().name(members[i])));
+            }
+            json.append(']');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String method(Map<String, String> query) {
+        MethodCallGraph methods = snapshot().methods();
+        int method = methods.indexOf(query.getOrDefault("name", ""));
+        if (method < 0) {
+            return null;
+        }
+        return "{\"method\":" + quote(methods.name(method))
+                + ",\"fanIn\":" + methods.fanIn(method)
+                + ",\"fanOut\":" + methods.fanOut(method)
+                + ",\"callers\":" + names(methods, methods.callersOf(method))
+                + ",\"callees\":" + names(methods, methods.calleesOf(method))
+                + ",\"reachable\":" + methods.reachableFrom(method).cardinality() + "}";
+    }
+
+    private static String names(MethodCallGraph methods, int[] ids) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(quote(methods.name(ids[i])));
+        }
+        return json.append(']').toString();
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    // A null body answers 404
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        int status = json != null ? 200 : 404;
+        byte[] body = (json != null ? json : "{\"error\":\"not found\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String quote(String text) {
+        StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    // Usage: AnalysisDaemon <projectPath> [port] [threads]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: AnalysisDaemon <projectPath> [port] [threads]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        AnalysisDaemon daemon = new AnalysisDaemon(Paths.get(args[0]), threads);
+        daemon.parser.getMetrics().register("AnalysisDaemon");
+        daemon.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        daemon.watchThread.join();
+    }
+}
@@ -0,0 +1,282 @@
+package MAIN;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and timers of one analysis (files parsed, parse latency, invocations, clustering steps).
+// Updates are LongAdder increments, per-event console output is only produced when tracing is enabled
+// with -Dcoupling.trace=true. TRACE is read once at class initialization; it is not a compile-time constant,
+// so javac keeps the trace calls, but the JIT treats the static final as a constant and drops the disabled
+// branches from compiled code (the interpreter still tests the flag).
+public class AnalysisMetrics implements AnalysisMetricsMXBean {
+
+    public static final boolean TRACE = Boolean.getBoolean("coupling.trace");
+
+    private final LongAdder filesParsed = new LongAdder();
+    private final LongAdder filesFromCache = new LongAdder();
+    private final LongAdder filesCacheMissed = new LongAdder(); // Files parsed because their cache entry was missing or stale
+    private final LongAdder filesFailed = new LongAdder(); // Files that could not be read or parsed
+    private final LongAdder classesDetected = new LongAdder();
+    private final LongAdder invocationsResolved = new LongAdder();
+    private final LongAdder invocationsSkipped = new LongAdder();
+    private final LongAdder invocationsNotUserDefined = new LongAdder();
+    private final Histogram parseNanos = new Histogram();
+    private final Histogram declarationsOnlyParseNanos = new Histogram(); // Files the pre-filter let skip the bodies
+    private final LongAdder prefilterScans = new LongAdder();
+    private final LongAdder prefilterNanos = new LongAdder();
+    private final Histogram clusteringStepNanos = new Histogram();
+
+    // Latency histogram with power-of-two buckets: bucket i counts values in [2^(i-1), 2^i)
+    static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long value) {
+            long v = Math.max(0, value);
+            buckets[Math.min(63, 64 - Long.numberOfLeadingZeros(v))].increment();
+            count.increment();
+            total.add(v);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long total() {
+            return total.sum();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) total.sum() / n;
+        }
+
+        // Upper bound of the bucket holding the given quantile (0 < q <= 1)
+        long percentile(double q) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            count.reset();
+            total.reset();
+        }
+    }
+
+    // Called once per parsed file with the counts the visitor collected locally
+    void recordFile(FileAnalysis analysis, long nanos) {
+        filesParsed.increment();
+        parseNanos.record(nanos);
+        classesDetected.add(analysis.userDefinedClasses.size());
+        invocationsResolved.add(analysis.totalCouplingCount);
+        invocationsSkipped.add(analysis.invocationsSkipped);
+        invocationsNotUserDefined.add(analysis.invocationsNotUserDefined);
+    }
+
+    // Files parsed without their method bodies after the pre-filter found no possible coupling
+    void recordDeclarationsOnlyFile(FileAnalysis analysis, long nanos) {
+        filesParsed.increment();
+        declarationsOnlyParseNanos.record(nanos);
+        classesDetected.add(analysis.userDefinedClasses.size());
+    }
+
+    void recordPrefilter(long nanos) {
+        prefilterScans.increment();
+        prefilterNanos.add(nanos);
+    }
+
+    void recordCachedFile() {
+        filesFromCache.increment();
+    }
+
+    void recordCacheMiss() {
+        filesCacheMissed.increment();
+    }
+
+    void recordFailedFile() {
+        filesFailed.increment();
+    }
+
+    void recordClusteringStep(long nanos) {
+        clusteringStepNanos.record(nanos);
+    }
+
+    // Register under MAIN:type=AnalysisMetrics,name=<name> on the platform MBean server
+    public void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("MAIN:type=AnalysisMetrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register analysis metrics " + name, e);
+        }
+    }
+
+    @Override
+    public long getFilesParsed() {
+        return filesParsed.sum();
+    }
+
+    @Override
+    public long getFilesFromCache() {
+        return filesFromCache.sum();
+    }
+
+    @Override
+    public long getFilesCacheMissed() {
+        return filesCacheMissed.sum();
+    }
+
+    @Override
+    public long getFilesFailed() {
+        return filesFailed.sum();
+    }
+
+    @Override
+    public long getClassesDetected() {
+        return classesDetected.sum();
+    }
+
+    @Override
+    public long getInvocationsResolved() {
+        return invocationsResolved.sum();
+    }
+
+    @Override
+    public long getInvocationsSkipped() {
+        return invocationsSkipped.sum();
+    }
+
+    @Override
+    public long getInvocationsNotUserDefined() {
+        return invocationsNotUserDefined.sum();
+    }
+
+    @Override
+    public double getParseTimeMeanMillis() {
+        return parseNanos.mean() / 1e6;
+    }
+
+    @Override
+    public double getParseTimeP50Millis() {
+        return parseNanos.percentile(0.50) / 1e6;
+    }
+
+    @Override
+    public double getParseTimeP99Millis() {
+        return parseNanos.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public long getFilesPrefiltered() {
+        return declarationsOnlyParseNanos.count();
+    }
+
+    @Override
+    public double getPrefilterSkipRate() {
+        long scans = prefilterScans.sum();
+        return scans == 0 ? 0 : (double) declarationsOnlyParseNanos.count() / scans;
+    }
+
+    // Estimated as (mean full parse - mean declarations-only parse) per skipped file, minus the cost of all scans
+    @Override
+    public double getPrefilterTimeSavedMillis() {
+        double savedPerFile = parseNanos.mean() - declarationsOnlyParseNanos.mean();
+        return (declarationsOnlyParseNanos.count() * savedPerFile - prefilterNanos.sum()) / 1e6;
+    }
+
+    @Override
+    public long getClusteringMerges() {
+        return clusteringStepNanos.count();
+    }
+
+    @Override
+    public double getClusteringStepMeanMicros() {
+        return clusteringStepNanos.mean() / 1e3;
+    }
+
+    @Override
+    public double getClusteringStepP99Micros() {
+        return clusteringStepNanos.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getClusteringTimeMillis() {
+        return clusteringStepNanos.total() / 1e6;
+    }
+
+    // All values at once, in a stable order
+    public Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new LinkedHashMap<>();
+        snapshot.put("filesParsed", getFilesParsed());
+        snapshot.put("filesFromCache", getFilesFromCache());
+        snapshot.put("filesCacheMissed", getFilesCacheMissed());
+        snapshot.put("filesFailed", getFilesFailed());
+        snapshot.put("classesDetected", getClassesDetected());
+        snapshot.put("invocationsResolved", getInvocationsResolved());
+        snapshot.put("invocationsSkipped", getInvocationsSkipped());
+        snapshot.put("invocationsNotUserDefined", getInvocationsNotUserDefined());
+        snapshot.put("parseTimeMeanMillis", getParseTimeMeanMillis());
+        snapshot.put("parseTimeP50Millis", getParseTimeP50Millis());
+        snapshot.put("parseTimeP99Millis", getParseTimeP99Millis());
+        snapshot.put("filesPrefiltered", getFilesPrefiltered());
+        snapshot.put("prefilterSkipRate", getPrefilterSkipRate());
+        snapshot.put("prefilterTimeSavedMillis", getPrefilterTimeSavedMillis());
+        snapshot.put("clusteringMerges", getClusteringMerges());
+        snapshot.put("clusteringStepMeanMicros", getClusteringStepMeanMicros());
+        snapshot.put("clusteringStepP99Micros", getClusteringStepP99Micros());
+        snapshot.put("clusteringTimeMillis", getClusteringTimeMillis());
+        return snapshot;
+    }
+
+    @Override
+    public void reset() {
+        filesParsed.reset();
+        filesFromCache.reset();
+        filesCacheMissed.reset();
+        filesFailed.reset();
+        classesDetected.reset();
+        invocationsResolved.reset();
+        invocationsSkipped.reset();
+        invocationsNotUserDefined.reset();
+        parseNanos.reset();
+        declarationsOnlyParseNanos.reset();
+        prefilterScans.reset();
+        prefilterNanos.reset();
+        clusteringStepNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "Analysis metrics: " + snapshot();
+    }
+}
@@ -0,0 +1,43 @@
+package MAIN;
+
+// JMX view of AnalysisMetrics (see AnalysisMetrics.register)
+public interface AnalysisMetricsMXBean {
+
+    long getFilesParsed();
+
+    long getFilesFromCache();
+
+    long getFilesCacheMissed();
+
+    long getFilesFailed();
+
+    long getClassesDetected();
+
+    long getInvocationsResolved();
+
+    long getInvocationsSkipped();
+
+    long getInvocationsNotUserDefined();
+
+    double getParseTimeMeanMillis();
+
+    double getParseTimeP50Millis();
+
+    double getParseTimeP99Millis();
+
+    long getFilesPrefiltered();
+
+    double getPrefilterSkipRate();
+
+    double getPrefilterTimeSavedMillis();
+
+    long getClusteringMerges();
+
+    double getClusteringStepMeanMicros();
+
+    double getClusteringStepP99Micros();
+
+    double getClusteringTimeMillis();
+
+    void reset();
+}
@@ -0,0 +1,165 @@
+package MAIN;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Command line entry point of the analyzer (Main-Class of the jar and of the native image).
+//
+// Paths can be project directories or single .java files, so a pre-commit hook can pass only the files of
+// the diff. Nothing optional (JMX registration, clustering, export) is loaded unless it is asked for, which
+// keeps the classes touched by a short run small enough for the CDS archive / native image built by the
+// "cds" and "native" profiles of pom.xml.
+public class AnalyzerMain {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: analyzer [options] <path>...",
+            "  <path>                 project directory or .java file",
+            "  -t, --threads <n>      worker threads (default: number of processors)",
+            "  --cache <file>         re-use the results of unchanged files",
+            "  --cluster <CP>         hierarchical clustering with the coupling threshold CP",
+            "  --louvain              Louvain clustering instead",
+            "  --export <file>        write the coupling graph (.graphml, .dot or .csv)",
+            "  --classes              list the user-defined classes",
+            "  -q, --quiet            do not print the coupling metrics",
+            "  --stats                print the analysis metrics",
+            "Other tools: AnalysisDaemon, ExternalCouplingAggregator, CouplingGraphViewer, HierarchicalClustering");
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path cacheFile = null;
+        Double CP = null;
+        boolean louvain = false;
+        Path exportFile = null;
+        CouplingExporter.Format exportFormat = null;
+        boolean classes = false;
+        boolean quiet = false;
+        boolean stats = false;
+        List<Path> paths = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-t":
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--cache":
+                        cacheFile = Paths.get(value(args, ++i));
+                        break;
+                    case "--cluster":
+                        CP = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--louvain":
+                        louvain = true;
+                        break;
+                    case "--export":
+                        exportFile = Paths.get(value(args, ++i));
+                        exportFormat = CouplingExporter.Format.fromFileName(exportFile.toString()); // Before a long analysis
+                        break;
+                    case "--classes":
+                        classes = true;
+                        break;
+                    case "-q":
+                    case "--quiet":
+                        quiet = true;
+                        break;
+                    case "--stats":
+                        stats = true;
+                        break;
+                    case "-h":
+                    case "--help":
+                        System.out.println(USAGE);
+                        return;
+                    default:
+                        if (args[i].startsWith("-")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        paths.add(Paths.get(args[i]));
+                }
+            }
+            if (paths.isEmpty()) {
+                throw new IllegalArgumentException("No path to analyze");
+            }
+            for (Path path : paths) {
+                if (!Files.exists(path)) {
+                    throw new IllegalArgumentException("No such file or directory: " + path);
+                }
+            }
+        } catch (IllegalArgumentException e) { // NumberFormatException included
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        boolean filesOnly = true;
+        for (Path path : paths) {
+            filesOnly &= Files.isRegularFile(path);
+        }
+        if (filesOnly) {
+            threads = Math.min(threads, paths.size()); // No idle workers for the few files of a diff
+        }
+
+        Parser parser = new Parser();
+        parser.analyzePaths(paths, threads, cacheFile);
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        if (classes) {
+            out.println("User-Defined Classes:");
+            for (String className : new TreeSet<>(parser.getStore().getUserDefinedClasses())) {
+                out.println(className);
+            }
+        }
+        if (!quiet) {
+            printCouplingMetrics(parser.getStore(), out);
+        }
+        if (CP != null || louvain) {
+            CouplingGraph graph = parser.getCouplingGraph();
+            ClusteringStrategy strategy = louvain ? new LouvainClustering()
+                    : new HierarchicalClustering(parser.getMetrics()).asStrategy(CP);
+            ClusteringResult result = strategy.cluster(graph);
+            out.println("Clusters (" + result.getClusters().size() + ", modularity "
+                    + String.format(Locale.ROOT, "%.4f", result.getModularity()) + "):");
+            for (HierarchicalClustering.Cluster cluster : result.getClusters()) {
+                out.println(cluster);
+            }
+        }
+        if (stats) {
+            out.println(parser.getMetrics());
+        }
+        out.flush();
+
+        if (exportFile != null) {
+            new CouplingExporter(parser.getStore()).export(exportFile, exportFormat);
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    // Same lines as Parser.printCouplingMetrics(), sorted so that the output of a hook is stable
+    private static void printCouplingMetrics(CouplingStore store, PrintWriter out) {
+        SymbolTable symbols = store.getSymbols();
+        long total = store.getTotalCouplingCount();
+        List<String> lines = new ArrayList<>();
+        store.forEachCoupling((from, to, count) -> lines.add("Coupling(" + symbols.nameOf(from) + " -> "
+                + symbols.nameOf(to) + ") = " + (total == 0 ? 0 : (double) count / total)));
+        Collections.sort(lines);
+
+        out.println("Coupling Metrics between Classes:");
+        if (lines.isEmpty()) {
+            out.println("No method invocations detected between user-defined classes.");
+        }
+        for (String line : lines) {
+            out.println(line);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package MAIN;
+
+import java.util.*;
+
+// Clusters found by a ClusteringStrategy, with the modularity of the partition.
+// Clusters are listed by their smallest class index, like the list returned by performClustering.
+//
+// Modularity Q = sum over clusters c of (in(c) / 2m - (tot(c) / 2m)^2), where in(c) is the coupling inside c
+// (both directions), tot(c) the total coupling of the classes of c and 2m the total coupling of the graph.
+public class ClusteringResult {
+
+    private final List<HierarchicalClustering.Cluster> clusters;
+    private final int[] clusterOf; // Position in clusters of each node of the graph
+    private final double[] clusterModularity;
+    private final double modularity;
+
+    private ClusteringResult(List<HierarchicalClustering.Cluster> clusters, int[] clusterOf, double[] clusterModularity) {
+        this.clusters = clusters;
+        this.clusterOf = clusterOf;
+        this.clusterModularity = clusterModularity;
+        double total = 0;
+        for (double q : clusterModularity) {
+            total += q;
+        }
+        this.modularity = total;
+    }
+
+    // From any labelling of the nodes (labels need not be dense)
+    static ClusteringResult of(CouplingGraph graph, int[] labels) {
+        int n = graph.size();
+        Map<Integer, Integer> clusterOfLabel = new HashMap<>();
+        int[] clusterOf = new int[n];
+        int[] sizes = new int[n];
+        for (int node = 0; node < n; node++) {
+            Integer cluster = clusterOfLabel.get(labels[node]);
+            if (cluster == null) {
+                cluster = clusterOfLabel.size();
+                clusterOfLabel.put(labels[node], cluster);
+            }
+            clusterOf[node] = cluster;
+            sizes[cluster]++;
+        }
+
+        int[][] members = new int[clusterOfLabel.size()][];
+        for (int cluster = 0; cluster < members.length; cluster++) {
+            members[cluster] = new int[sizes[cluster]];
+            sizes[cluster] = 0;
+        }
+        for (int node = 0; node < n; node++) {
+            int cluster = clusterOf[node];
+            members[cluster][sizes[cluster]++] = node;
+        }
+        List<HierarchicalClustering.Cluster> clusters = new ArrayList<>(members.length);
+        for (int[] nodes : members) {
+            clusters.add(new HierarchicalClustering.Cluster(graph, nodes));
+        }
+        return new ClusteringResult(clusters, clusterOf, modularity(graph, clusterOf, members.length));
+    }
+
+    // From the clusters returned by performClustering
+    static ClusteringResult of(CouplingGraph graph, List<HierarchicalClustering.Cluster> clusters) {
+        int[] clusterOf = new int[graph.size()];
+        for (int cluster = 0; cluster < clusters.size(); cluster++) {
+            for (int node : clusters.get(cluster).members) {
+                clusterOf[node] = cluster;
+            }
+        }
+        return new ClusteringResult(clusters, clusterOf, modularity(graph, clusterOf, clusters.size()));
+    }
+
+    // Contribution of each cluster to the modularity
+    private static double[] modularity(CouplingGraph graph, int[] clusterOf, int clusterCount) {
+        double[] inside = new double[clusterCount];
+        double[] total = new double[clusterCount];
+        double twoM = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            for (int position = graph.neighborStart(node); position < graph.neighborEnd(node); position++) {
+                double weight = graph.weightAt(position);
+                total[clusterOf[node]] += weight;
+                twoM += weight;
+                if (clusterOf[graph.neighbor(position)] == clusterOf[node]) {
+                    inside[clusterOf[node]] += weight;
+                }
+            }
+        }
+
+        double[] q = new double[clusterCount];
+        if (twoM > 0) {
+            for (int cluster = 0; cluster < clusterCount; cluster++) {
+                double share = total[cluster] / twoM;
+                q[cluster] = inside[cluster] / twoM - share * share;
+            }
+        }
+        return q;
+    }
+
+    public List<HierarchicalClustering.Cluster> getClusters() {
+        return clusters;
+    }
+
+    // Position in getClusters() of the cluster of a node of the graph
+    public int clusterOf(int node) {
+        return clusterOf[node];
+    }
+
+    public double getModularity() {
+        return modularity;
+    }
+
+    public double getClusterModularity(int cluster) {
+        return clusterModularity[cluster];
+    }
+}
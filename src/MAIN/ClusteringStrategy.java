@@ -0,0 +1,9 @@
+package MAIN;
+
+// Algorithm that splits the classes of a coupling graph into modules.
+// Available strategies: HierarchicalClustering.asStrategy(CP) (agglomerative, O(n^2) memory)
+// and LouvainClustering (modularity optimization, near-linear in the number of edges).
+public interface ClusteringStrategy {
+
+    ClusteringResult cluster(CouplingGraph graph);
+}
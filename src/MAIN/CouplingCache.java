@@ -0,0 +1,342 @@
+package MAIN;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+// On-disk cache of the per-file analysis results, keyed by absolute normalized file path.
+// A file is re-used when its size and modification time are unchanged, or when its content hash still matches.
+// A run may cover only part of the cached files (a few files of a diff): the entries it did not visit are kept
+// as long as their file still exists.
+//
+// File layout (big endian):
+//   int magic, int version, int entryCount
+//   entry: string path, long lastModified, long size, long hash, analysis
+//   analysis: int classCount, { string name, byte userDefined, int methodCount, string method* }*
+//             int symbolCount, string symbol*, int edgeCount, { int from, int to, long count }*, int totalCouplingCount
+//             int methodCount, string method*, int callCount, { int from, int to, long count }*
+//   string: int byteLength, UTF-8 bytes
+public class CouplingCache {
+
+    private static final int MAGIC = 0x43504C43; // "CPLC"
+    private static final int VERSION = 2; // 2: method calls
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static class Entry {
+        final long lastModified;
+        final long size;
+        final long hash;
+        final FileAnalysis analysis;
+
+        Entry(long lastModified, long size, long hash, FileAnalysis analysis) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+            this.analysis = analysis;
+        }
+    }
+
+    private final Map<String, Entry> previous; // Loaded from disk
+    private final Map<String, Entry> current = new ConcurrentHashMap<>(); // Files seen during this run
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private CouplingCache(Map<String, Entry> previous) {
+        this.previous = previous;
+    }
+
+    public static CouplingCache empty() {
+        return new CouplingCache(new HashMap<>());
+    }
+
+    // Load a cache file, an unreadable or outdated file gives an empty cache.
+    // The file is read into the heap rather than mapped: save() replaces it, which fails on Windows while a
+    // mapping of the file is alive (and a mapping is only released when its buffer is garbage collected).
+    public static CouplingCache load(Path cacheFile) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return empty();
+        }
+        try {
+            ByteBuffer buffer = readFully(cacheFile);
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return empty();
+            }
+            int entryCount = buffer.getInt();
+            Map<String, Entry> entries = new HashMap<>(entryCount * 2);
+            for (int i = 0; i < entryCount; i++) {
+                String path = readString(buffer);
+                long lastModified = buffer.getLong();
+                long size = buffer.getLong();
+                long hash = buffer.getLong();
+                entries.put(path, new Entry(lastModified, size, hash, readAnalysis(buffer)));
+            }
+            return new CouplingCache(entries);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("Ignoring unreadable coupling cache " + cacheFile + ": " + e);
+            return empty();
+        }
+    }
+
+    private static ByteBuffer readFully(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Cache file too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break; // Truncated while reading, the parse below rejects it
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    // Cached result for a file whose size and modification time did not change, or null
+    public FileAnalysis lookup(Path file, long lastModified, long size) {
+        String key = key(file);
+        Entry entry = previous.get(key);
+        if (entry != null && entry.lastModified == lastModified && entry.size == size) {
+            current.put(key, entry);
+            hits.incrementAndGet();
+            return entry.analysis;
+        }
+        return null;
+    }
+
+    // Cached result for a file that was touched but whose content is the same, or null
+    public FileAnalysis lookup(Path file, long lastModified, long size, long hash) {
+        String key = key(file);
+        Entry entry = previous.get(key);
+        if (entry != null && entry.size == size && entry.hash == hash) {
+            current.put(key, new Entry(lastModified, size, hash, entry.analysis));
+            hits.incrementAndGet();
+            return entry.analysis;
+        }
+        return null;
+    }
+
+    public void put(Path file, long lastModified, long size, long hash, FileAnalysis analysis) {
+        current.put(key(file), new Entry(lastModified, size, hash, analysis));
+        misses.incrementAndGet();
+    }
+
+    // Relative and absolute spellings of a file share one entry
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public static long hash(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    // Same hash over the remaining bytes of a buffer, the position of the buffer is left unchanged
+    public static long hash(ByteBuffer content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content.duplicate());
+        return crc.getValue();
+    }
+
+    // Write the entries of the files seen during this run, plus the loaded entries of files it did not visit;
+    // deleted files are dropped
+    public void save(Path cacheFile) throws IOException {
+        Map<String, Entry> entries = new HashMap<>(current);
+        for (Map.Entry<String, Entry> e : previous.entrySet()) {
+            if (!entries.containsKey(e.getKey()) && Files.isRegularFile(Paths.get(e.getKey()))) {
+                entries.put(e.getKey(), e.getValue());
+            }
+        }
+
+        Path parent = cacheFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelWriter out = new ChannelWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.putString(e.getKey());
+                out.putLong(entry.lastModified);
+                out.putLong(entry.size);
+                out.putLong(entry.hash);
+                writeAnalysis(out, entry.analysis);
+            }
+            out.flush();
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeAnalysis(ChannelWriter out, FileAnalysis analysis) throws IOException {
+        out.putInt(analysis.classMethodsMap.size());
+        for (Map.Entry<String, Set<String>> entry : analysis.classMethodsMap.entrySet()) {
+            out.putString(entry.getKey());
+            out.putByte(analysis.userDefinedClasses.contains(entry.getKey()) ? 1 : 0);
+            out.putInt(entry.getValue().size());
+            for (String method : entry.getValue()) {
+                out.putString(method);
+            }
+        }
+
+        SymbolTable symbols = analysis.symbols;
+        out.putInt(symbols.size());
+        for (int id = 0; id < symbols.size(); id++) {
+            out.putString(symbols.nameOf(id));
+        }
+
+        writeEdges(out, analysis.couplingCount);
+        out.putInt(analysis.totalCouplingCount);
+
+        SymbolTable methodSymbols = analysis.methodSymbols;
+        out.putInt(methodSymbols.size());
+        for (int id = 0; id < methodSymbols.size(); id++) {
+            out.putString(methodSymbols.nameOf(id));
+        }
+        writeEdges(out, analysis.methodCalls);
+    }
+
+    private static void writeEdges(ChannelWriter out, EdgeCountMap edges) throws IOException {
+        out.putInt(edges.size());
+        IOException[] failure = new IOException[1];
+        edges.forEach((from, to, count) -> {
+            try {
+                out.putInt(from);
+                out.putInt(to);
+                out.putLong(count);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private static FileAnalysis readAnalysis(ByteBuffer buffer) {
+        FileAnalysis analysis = new FileAnalysis();
+        int classCount = buffer.getInt();
+        for (int i = 0; i < classCount; i++) {
+            String className = readString(buffer);
+            if (buffer.get() != 0) {
+                analysis.userDefinedClasses.add(className);
+            }
+            int methodCount = buffer.getInt();
+            Set<String> methods = new HashSet<>();
+            for (int j = 0; j < methodCount; j++) {
+                methods.add(readString(buffer));
+            }
+            analysis.classMethodsMap.put(className, methods);
+        }
+
+        int symbolCount = buffer.getInt();
+        for (int id = 0; id < symbolCount; id++) {
+            analysis.symbols.intern(readString(buffer));
+        }
+
+        readEdges(buffer, analysis.couplingCount);
+        analysis.totalCouplingCount = buffer.getInt();
+
+        int methodCount = buffer.getInt();
+        for (int id = 0; id < methodCount; id++) {
+            analysis.methodSymbols.intern(readString(buffer));
+        }
+        readEdges(buffer, analysis.methodCalls);
+        return analysis;
+    }
+
+    private static void readEdges(ByteBuffer buffer, EdgeCountMap edges) {
+        int edgeCount = buffer.getInt();
+        for (int i = 0; i < edgeCount; i++) {
+            int from = buffer.getInt();
+            int to = buffer.getInt();
+            edges.add(from, to, buffer.getLong());
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Small buffered writer on top of a FileChannel
+    private static class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                ByteBuffer large = ByteBuffer.wrap(bytes);
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+                return;
+            }
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
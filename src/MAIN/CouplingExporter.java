@@ -0,0 +1,259 @@
+package MAIN;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Headless export of the coupling edges to GraphML, DOT or CSV.
+//
+// Edges are undirected class pairs weighted like getCouplingMetrics() and the clustering:
+// coupling = max(invocations(A -> B), invocations(B -> A)) / total invocations, and "invocations" is that
+// larger directed count.
+//
+// exportProject() streams the pairs to the file while the external aggregation merges them (see
+// ExternalCouplingAggregator): no CouplingStore is built and memory stays within the aggregation budget.
+// export() writes the pairs of an already analyzed store; its counters are copied into one primitive map
+// under the stripe locks first, so no lock is held during I/O.
+public class CouplingExporter {
+
+    public enum Format {
+        GRAPHML, DOT, CSV;
+
+        // Format from the extension of the output file (.graphml, .dot/.gv, .csv)
+        public static Format fromFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".graphml") || name.endsWith(".xml")) {
+                return GRAPHML;
+            }
+            if (name.endsWith(".dot") || name.endsWith(".gv")) {
+                return DOT;
+            }
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            throw new IllegalArgumentException("Unknown export format for " + fileName + " (use .graphml, .dot or .csv)");
+        }
+    }
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    private final CouplingStore store;
+
+    public CouplingExporter(CouplingStore store) {
+        this.store = store;
+    }
+
+    public void export(Path output, Format format) throws IOException {
+        try (Writer out = open(output)) {
+            export(out, format);
+        }
+    }
+
+    public void export(Writer out, Format format) throws IOException {
+        long total = store.getTotalCouplingCount();
+        double divisor = total == 0 ? 1 : total; // Avoid division by zero
+
+        // Undirected pairs keyed by (min id, max id), keeping the largest directed count (as CouplingGraph)
+        EdgeCountMap pairs = new EdgeCountMap();
+        store.forEachCoupling((from, to, count) -> {
+            int a = Math.min(from, to);
+            int b = Math.max(from, to);
+            long previous = pairs.get(a, b);
+            if (count > previous) {
+                pairs.add(a, b, count - previous);
+            }
+        });
+
+        SymbolTable symbols = store.getSymbols();
+        PairWriter writer = PairWriter.of(format, out);
+        writer.begin();
+        try {
+            pairs.forEach((a, b, count) -> {
+                String first = symbols.nameOf(a);
+                String second = symbols.nameOf(b);
+                try {
+                    // Oriented like ExternalCouplingAggregator, first <= second
+                    if (first.compareTo(second) <= 0) {
+                        writer.accept(first, second, count, count / divisor);
+                    } else {
+                        writer.accept(second, first, count, count / divisor);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.end();
+    }
+
+    // Analyze a project and write its pairs as the external aggregation produces them
+    public static void exportProject(String projectPath, int threads, long memoryBudget, Path output) throws IOException {
+        Format format = Format.fromFileName(output.toString());
+        try (ExternalCouplingAggregator aggregator = new ExternalCouplingAggregator(memoryBudget);
+             Writer out = open(output)) {
+            new Parser().forEachFileAnalysis(projectPath, threads, aggregator::add);
+            PairWriter writer = PairWriter.of(format, out);
+            writer.begin();
+            aggregator.finish(writer);
+            writer.end();
+        }
+    }
+
+    private static Writer open(Path output) throws IOException {
+        FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    // Writes one format pair by pair: begin(), accept()*, end()
+    abstract static class PairWriter implements ExternalCouplingAggregator.MetricConsumer {
+        final Writer out;
+
+        PairWriter(Writer out) {
+            this.out = out;
+        }
+
+        static PairWriter of(Format format, Writer out) {
+            switch (format) {
+                case GRAPHML:
+                    return new GraphMLWriter(out);
+                case DOT:
+                    return new DotWriter(out);
+                default:
+                    return new CsvWriter(out);
+            }
+        }
+
+        abstract void begin() throws IOException;
+
+        abstract void end() throws IOException;
+    }
+
+    // Nodes are declared the first time a class appears in a pair, so only the node ids are kept in memory
+    private static final class GraphMLWriter extends PairWriter {
+        private final Map<String, Integer> nodeIds = new HashMap<>();
+
+        GraphMLWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+            out.write("  <key id=\"label\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>\n");
+            out.write("  <key id=\"invocations\" for=\"edge\" attr.name=\"invocations\" attr.type=\"long\"/>\n");
+            out.write("  <key id=\"coupling\" for=\"edge\" attr.name=\"coupling\" attr.type=\"double\"/>\n");
+            out.write("  <graph id=\"coupling\" edgedefault=\"undirected\">\n");
+        }
+
+        @Override
+        public void accept(String first, String second, long invocations, double coupling) throws IOException {
+            int source = node(first);
+            int target = node(second);
+            out.write("    <edge source=\"n" + source + "\" target=\"n" + target + "\">"
+                    + "<data key=\"invocations\">" + invocations + "</data>"
+                    + "<data key=\"coupling\">" + coupling + "</data></edge>\n");
+        }
+
+        private int node(String name) throws IOException {
+            Integer id = nodeIds.get(name);
+            if (id == null) {
+                id = nodeIds.size();
+                nodeIds.put(name, id);
+                out.write("    <node id=\"n" + id + "\"><data key=\"label\">" + escapeXml(name) + "</data></node>\n");
+            }
+            return id;
+        }
+
+        @Override
+        void end() throws IOException {
+            out.write("  </graph>\n");
+            out.write("</graphml>\n");
+        }
+    }
+
+    private static final class DotWriter extends PairWriter {
+        DotWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write("graph coupling {\n");
+        }
+
+        @Override
+        public void accept(String first, String second, long invocations, double coupling) throws IOException {
+            out.write("  " + quoteDot(first) + " -- " + quoteDot(second) + " [label=\""
+                    + String.format(Locale.ROOT, "%.4f", coupling) + "\", invocations=" + invocations + "];\n");
+        }
+
+        @Override
+        void end() throws IOException {
+            out.write("}\n");
+        }
+    }
+
+    private static final class CsvWriter extends PairWriter {
+        CsvWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write("first,second,invocations,coupling\n");
+        }
+
+        @Override
+        public void accept(String first, String second, long invocations, double coupling) throws IOException {
+            out.write(quoteCsv(first) + "," + quoteCsv(second) + "," + invocations + "," + coupling + "\n");
+        }
+
+        @Override
+        void end() {
+        }
+    }
+
+    private static String escapeXml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String quoteDot(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    static String quoteCsv(String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            return text;
+        }
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    // Usage: CouplingExporter <projectPath> <output.graphml|.dot|.csv> [threads] [budgetMB]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CouplingExporter <projectPath> <output.graphml|.dot|.csv> [threads] [budgetMB]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long budget = args.length > 3 ? Long.parseLong(args[3]) * 1024 * 1024 : DEFAULT_MEMORY_BUDGET;
+
+        Path output = Paths.get(args[1]);
+        exportProject(args[0], threads, budget, output);
+        System.out.println("Coupling edges written to " + output);
+    }
+}
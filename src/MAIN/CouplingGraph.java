@@ -0,0 +1,244 @@
+package MAIN;
+
+import java.util.*;
+
+// Immutable coupling graph in compressed sparse row (CSR) form.
+// Node i is names[i] (sorted, so the numbering does not depend on parsing order),
+// the neighbors of i are neighbors[rowStart[i] .. rowStart[i + 1]) sorted by index, with the metric in weights[].
+public class CouplingGraph {
+
+    private final String[] names;
+    private final int[] rowStart;
+    private final int[] neighbors;
+    private final double[] weights;
+
+    private CouplingGraph(String[] names, int[] rowStart, int[] neighbors, double[] weights) {
+        this.names = names;
+        this.rowStart = rowStart;
+        this.neighbors = neighbors;
+        this.weights = weights;
+    }
+
+    // Coupling(A, B) = invocations(A -> B) / total invocations, stored in both directions.
+    // When both A -> B and B -> A were observed the pair keeps the larger of the two metrics.
+    static CouplingGraph fromStore(CouplingStore store) {
+        long total = store.getTotalCouplingCount();
+        double divisor = total == 0 ? 1 : total; // Avoid division by zero
+
+        // Undirected pairs keyed by (min id, max id), keeping the largest directed count
+        EdgeCountMap pairs = new EdgeCountMap();
+        store.forEachCoupling((from, to, count) -> {
+            int a = Math.min(from, to);
+            int b = Math.max(from, to);
+            long previous = pairs.get(a, b);
+            if (count > previous) {
+                pairs.add(a, b, count - previous);
+            }
+        });
+
+        // Keep only the classes that take part in an edge, numbered in name order
+        SymbolTable symbols = store.getSymbols();
+        boolean[] used = new boolean[symbols.size()];
+        pairs.forEach((a, b, count) -> {
+            used[a] = true;
+            used[b] = true;
+        });
+        List<String> usedNames = new ArrayList<>();
+        for (int id = 0; id < used.length; id++) {
+            if (used[id]) {
+                usedNames.add(symbols.nameOf(id));
+            }
+        }
+        String[] names = usedNames.toArray(new String[0]);
+        Arrays.sort(names);
+        int[] nodeOf = new int[used.length];
+        for (int i = 0; i < names.length; i++) {
+            nodeOf[symbols.idOf(names[i])] = i;
+        }
+
+        Builder builder = new Builder(names, pairs.size() * 2);
+        pairs.forEach((a, b, count) -> {
+            double metric = count / divisor;
+            builder.add(nodeOf[a], nodeOf[b], metric);
+            if (a != b) {
+                builder.add(nodeOf[b], nodeOf[a], metric);
+            }
+        });
+        return builder.build();
+    }
+
+    // Build from a nested map such as Parser.getCouplingMetrics(). Like fromStore the graph is symmetric: a pair given
+    // in one direction only is stored in both, and a pair given in both keeps the larger metric.
+    public static CouplingGraph fromMetrics(Map<String, Map<String, Double>> couplingMetrics) {
+        Set<String> allNames = new TreeSet<>(couplingMetrics.keySet());
+        for (Map<String, Double> row : couplingMetrics.values()) {
+            allNames.addAll(row.keySet());
+        }
+        String[] names = allNames.toArray(new String[0]);
+
+        Map<Long, Double> pairs = new HashMap<>(); // (min node, max node) -> metric
+        for (Map.Entry<String, Map<String, Double>> row : couplingMetrics.entrySet()) {
+            int from = Arrays.binarySearch(names, row.getKey());
+            for (Map.Entry<String, Double> edge : row.getValue().entrySet()) {
+                int to = Arrays.binarySearch(names, edge.getKey());
+                pairs.merge(EdgeCountMap.key(Math.min(from, to), Math.max(from, to)), edge.getValue(), Math::max);
+            }
+        }
+        Builder builder = new Builder(names, pairs.size() * 2);
+        for (Map.Entry<Long, Double> pair : pairs.entrySet()) {
+            int a = EdgeCountMap.from(pair.getKey());
+            int b = EdgeCountMap.to(pair.getKey());
+            builder.add(a, b, pair.getValue());
+            if (a != b) {
+                builder.add(b, a, pair.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int node) {
+        return names[node];
+    }
+
+    // Node of a class name, or -1 if the class has no coupling
+    public int indexOf(String name) {
+        int node = Arrays.binarySearch(names, name);
+        return node >= 0 ? node : -1;
+    }
+
+    // Neighbors of a node are the positions neighborStart(node) .. neighborEnd(node) - 1
+    public int neighborStart(int node) {
+        return rowStart[node];
+    }
+
+    public int neighborEnd(int node) {
+        return rowStart[node + 1];
+    }
+
+    public int neighbor(int position) {
+        return neighbors[position];
+    }
+
+    public double weightAt(int position) {
+        return weights[position];
+    }
+
+    public int edgeCount() {
+        return neighbors.length;
+    }
+
+    // Position of the edge from -> to, or -1 if there is none
+    public int edgePosition(int from, int to) {
+        int position = Arrays.binarySearch(neighbors, rowStart[from], rowStart[from + 1], to);
+        return position >= 0 ? position : -1;
+    }
+
+    // Coupling metric from -> to, 0 when the classes are not coupled
+    public double weight(int from, int to) {
+        int position = edgePosition(from, to);
+        return position >= 0 ? weights[position] : 0;
+    }
+
+    // Nested map view, same shape as Parser.getCouplingMetrics()
+    public Map<String, Map<String, Double>> toMetricsMap() {
+        Map<String, Map<String, Double>> couplingMetrics = new HashMap<>();
+        for (int node = 0; node < names.length; node++) {
+            if (rowStart[node] == rowStart[node + 1]) {
+                continue;
+            }
+            Map<String, Double> row = new HashMap<>();
+            for (int position = rowStart[node]; position < rowStart[node + 1]; position++) {
+                row.put(names[neighbors[position]], weights[position]);
+            }
+            couplingMetrics.put(names[node], row);
+        }
+        return couplingMetrics;
+    }
+
+    // Collects (from, to, weight) triples and sorts them into CSR arrays
+    private static class Builder {
+        private final String[] names;
+        private int[] from;
+        private int[] to;
+        private double[] weight;
+        private int size = 0;
+
+        Builder(String[] names, int expectedEdges) {
+            this.names = names;
+            this.from = new int[expectedEdges];
+            this.to = new int[expectedEdges];
+            this.weight = new double[expectedEdges];
+        }
+
+        void add(int a, int b, double w) {
+            if (size == from.length) {
+                int capacity = Math.max(16, size * 2);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+            }
+            from[size] = a;
+            to[size] = b;
+            weight[size] = w;
+            size++;
+        }
+
+        CouplingGraph build() {
+            int[] rowStart = new int[names.length + 1];
+            for (int i = 0; i < size; i++) {
+                rowStart[from[i] + 1]++;
+            }
+            for (int node = 0; node < names.length; node++) {
+                rowStart[node + 1] += rowStart[node];
+            }
+
+            int[] next = Arrays.copyOf(rowStart, names.length);
+            int[] neighbors = new int[size];
+            double[] weights = new double[size];
+            for (int i = 0; i < size; i++) {
+                int position = next[from[i]]++;
+                neighbors[position] = to[i];
+                weights[position] = weight[i];
+            }
+
+            // Sort every row by neighbor index so that edgePosition() can binary search
+            for (int node = 0; node < names.length; node++) {
+                sortRow(neighbors, weights, rowStart[node], rowStart[node + 1]);
+            }
+            return new CouplingGraph(names, rowStart, neighbors, weights);
+        }
+
+        // Insertion sort, rows are short on coupling graphs; falls back to a packed sort for long rows
+        private static void sortRow(int[] neighbors, double[] weights, int start, int end) {
+            if (end - start > 32) {
+                long[] packed = new long[end - start];
+                for (int i = start; i < end; i++) {
+                    packed[i - start] = ((long) neighbors[i] << 32) | (i - start);
+                }
+                Arrays.sort(packed);
+                double[] rowWeights = Arrays.copyOfRange(weights, start, end);
+                for (int i = 0; i < packed.length; i++) {
+                    neighbors[start + i] = (int) (packed[i] >>> 32);
+                    weights[start + i] = rowWeights[(int) packed[i]];
+                }
+                return;
+            }
+            for (int i = start + 1; i < end; i++) {
+                int n = neighbors[i];
+                double w = weights[i];
+                int j = i - 1;
+                while (j >= start && neighbors[j] > n) {
+                    neighbors[j + 1] = neighbors[j];
+                    weights[j + 1] = weights[j];
+                    j--;
+                }
+                neighbors[j + 1] = n;
+                weights[j + 1] = w;
+            }
+        }
+    }
+}
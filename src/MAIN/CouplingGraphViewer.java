@@ -5,56 +5,263 @@ import com.mxgraph.swing.mxGraphComponent;
 import com.mxgraph.view.mxGraph;
 
 import javax.swing.*;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
 
-public class CouplingGraphViewer extends JFrame {
+@SuppressWarnings("serial") // Swing frame, never serialized
+public final class CouplingGraphViewer extends JFrame {
+
+    private static final double DEFAULT_MIN_COUPLING = 0.0;
+    private static final int DEFAULT_TOP_K = 5;
+
+    private final CouplingGraph couplingGraph;
+    private final int[] clusterOf; // Cluster of each node, null when no clustering was given
+    private final int[] clusterSize;
+    private final Set<Integer> expandedClusters = new HashSet<>();
+
+    private final mxGraphComponent graphComponent;
+    private final JSpinner minCouplingSpinner;
+    private final JSpinner topKSpinner;
+    private final JCheckBox collapseClusters;
+    private final JLabel status = new JLabel();
+
+    private SwingWorker<View, Void> pendingLayout;
+    private View currentView;
+    private boolean listening; // Listeners are wired and the first layout started when the frame is first shown
+
+    // Graph shown on screen: the visible nodes (classes or collapsed clusters) and the cells created for them
+    private static class View {
+        final mxGraph graph;
+        final Map<Object, Integer> nodeOfCell = new HashMap<>(); // >= 0: class node, < 0: cluster -(id + 1)
+        int nodes;
+        int edges;
+        int prunedEdges;
+        int prunedNodes;
+        long millis;
+
+        View(mxGraph graph) {
+            this.graph = graph;
+        }
+    }
+
+    public CouplingGraphViewer(Map<String, Map<String, Double>> couplingMetrics) {
+        this(CouplingGraph.fromMetrics(couplingMetrics), null);
+    }
+
+    // clusters may be null; otherwise each cluster can be drawn as a single node and expanded by double-click
+    public CouplingGraphViewer(CouplingGraph couplingGraph, List<HierarchicalClustering.Cluster> clusters) {
+        this.couplingGraph = couplingGraph;
+        if (clusters != null) {
+            clusterOf = new int[couplingGraph.size()];
+            clusterSize = new int[clusters.size()];
+            for (int cluster = 0; cluster < clusters.size(); cluster++) {
+                for (int node : clusters.get(cluster).members) {
+                    clusterOf[node] = cluster;
+                }
+                clusterSize[cluster] = clusters.get(cluster).members.length;
+            }
+        } else {
+            clusterOf = null;
+            clusterSize = null;
+        }
+
+        // Filters: minimum coupling and number of strongest edges kept per node
+        minCouplingSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_MIN_COUPLING, 0.0, 1.0, 0.001));
+        ((JSpinner.NumberEditor) minCouplingSpinner.getEditor()).getFormat().applyPattern("0.0000");
+        topKSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_TOP_K, 0, 1000, 1));
+        collapseClusters = new JCheckBox("Collapse clusters", clusterOf != null);
+        collapseClusters.setEnabled(clusterOf != null);
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("Min coupling:"));
+        controls.add(minCouplingSpinner);
+        controls.add(new JLabel("Top edges per node (0 = all):"));
+        controls.add(topKSpinner);
+        controls.add(collapseClusters);
+        controls.add(status);
+
+        // Create and configure the JGraphX component, the graph itself is built in the background
+        graphComponent = new mxGraphComponent(new mxGraph());
+
+        getContentPane().add(controls, BorderLayout.NORTH);
+        getContentPane().add(graphComponent, BorderLayout.CENTER);
+
+        // Window settings
+        setTitle("Coupling Graph");
+        setSize(800, 600);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        if (visible && !listening) {
+            listening = true;
+            listen();
+            rebuild();
+        }
+        super.setVisible(visible);
+    }
+
+    private void listen() {
+        minCouplingSpinner.addChangeListener(e -> rebuild());
+        topKSpinner.addChangeListener(e -> rebuild());
+        collapseClusters.addActionListener(e -> {
+            expandedClusters.clear();
+            rebuild();
+        });
+        graphComponent.getGraphControl().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    toggleCluster(graphComponent.getCellAt(e.getX(), e.getY()));
+                }
+            }
+        });
+    }
+
+    // Double-click on a cluster expands it, double-click on one of its classes collapses it again
+    private void toggleCluster(Object cell) {
+        if (cell == null || currentView == null || clusterOf == null) {
+            return;
+        }
+        Integer node = currentView.nodeOfCell.get(cell);
+        if (node == null) {
+            return;
+        }
+        if (node < 0) {
+            expandedClusters.add(-node - 1);
+        } else if (!expandedClusters.remove(clusterOf[node])) {
+            return;
+        }
+        rebuild();
+    }
+
+    // Build and lay out the graph on a background thread, then swap it in on the EDT
+    private void rebuild() {
+        if (pendingLayout != null) {
+            pendingLayout.cancel(true);
+        }
+        double minCoupling = ((Number) minCouplingSpinner.getValue()).doubleValue();
+        int topK = ((Number) topKSpinner.getValue()).intValue();
+        boolean collapse = collapseClusters.isSelected() && clusterOf != null;
+        Set<Integer> expanded = new HashSet<>(expandedClusters);
+
+        status.setText("Laying out...");
+        SwingWorker<View, Void> worker = new SwingWorker<View, Void>() {
+            @Override
+            protected View doInBackground() {
+                return buildView(minCoupling, topK, collapse, expanded);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || pendingLayout != this) {
+                    return;
+                }
+                try {
+                    View view = get();
+                    currentView = view;
+                    graphComponent.setGraph(view.graph);
+                    graphComponent.refresh();
+                    status.setText(view.nodes + " nodes, " + view.edges + " edges (" + view.prunedNodes + " nodes and "
+                            + view.prunedEdges + " edges hidden), "
+                            + view.millis + " ms");
+                } catch (InterruptedException | ExecutionException e) {
+                    status.setText("Layout failed: " + e.getMessage());
+                }
+            }
+        };
+        pendingLayout = worker;
+        worker.execute();
+    }
+
+    private View buildView(double minCoupling, int topK, boolean collapse, Set<Integer> expanded) {
+        long start = System.currentTimeMillis();
+
+        // Visible node of every class: the class itself, or its collapsed cluster
+        int n = couplingGraph.size();
+        int[] viewNode = new int[n];
+        for (int node = 0; node < n; node++) {
+            boolean collapsed = collapse && clusterSize[clusterOf[node]] > 1 && !expanded.contains(clusterOf[node]);
+            viewNode[node] = collapsed ? -clusterOf[node] - 1 : node;
+        }
+
+        // Coupling between visible nodes, summed over the classes of collapsed clusters
+        Map<Long, double[]> weights = new HashMap<>();
+        for (int a = 0; a < n; a++) {
+            for (int position = couplingGraph.neighborStart(a); position < couplingGraph.neighborEnd(a); position++) {
+                int b = couplingGraph.neighbor(position);
+                // Skip self-coupling; the rows are symmetric (see CouplingGraph), so each pair is taken from its lower end
+                if (b <= a || viewNode[a] == viewNode[b]) {
+                    continue;
+                }
+                int from = Math.min(viewNode[a], viewNode[b]);
+                int to = Math.max(viewNode[a], viewNode[b]);
+                weights.computeIfAbsent(EdgeCountMap.key(from, to), k -> new double[1])[0] += couplingGraph.weightAt(position);
+            }
+        }
+
+        // Keep edges above the threshold that are among the top K of at least one of their ends
+        List<Map.Entry<Long, double[]>> edges = new ArrayList<>();
+        for (Map.Entry<Long, double[]> edge : weights.entrySet()) {
+            if (edge.getValue()[0] >= minCoupling) {
+                edges.add(edge);
+            }
+        }
+        edges.sort((x, y) -> Double.compare(y.getValue()[0], x.getValue()[0]));
+        Map<Integer, Integer> kept = new HashMap<>();
+        List<Map.Entry<Long, double[]>> shown = new ArrayList<>();
+        for (Map.Entry<Long, double[]> edge : edges) {
+            int from = EdgeCountMap.from(edge.getKey());
+            int to = EdgeCountMap.to(edge.getKey());
+            int keptFrom = kept.getOrDefault(from, 0);
+            int keptTo = kept.getOrDefault(to, 0);
+            if (topK == 0 || keptFrom < topK || keptTo < topK) {
+                kept.put(from, keptFrom + 1);
+                kept.put(to, keptTo + 1);
+                shown.add(edge);
+            }
+        }
 
-    public CouplingGraphViewer() {
         // Create a JGraphX graph
         mxGraph graph = new mxGraph();
+        graph.setCellsEditable(false);
+        graph.setCellsDisconnectable(false);
         Object parent = graph.getDefaultParent();
-        
-        // Retrieve the coupling data (you can get this from the Parser)
-        Map<String, Map<String, Double>> couplingMetrics = Parser.getCouplingMetrics();
-        
+        View view = new View(graph);
+
         // Dictionary to track added nodes
-        Map<String, Object> classNodes = new HashMap<>();
+        Map<Integer, Object> cells = new HashMap<>();
+        Set<Integer> visibleNodes = new HashSet<>();
 
         // Begin updating the graph
         graph.getModel().beginUpdate();
         try {
-            // Create nodes and edges for each class based on the coupling metrics
-            for (String class1 : couplingMetrics.keySet()) {
-                // Add class1 node if not already added
-                if (!classNodes.containsKey(class1)) {
-                    Object classNode1 = graph.insertVertex(parent, null, class1, 100, 100, 80, 30);
-                    classNodes.put(class1, classNode1);
-                }
-
-                // Loop through the second class for each coupling
-                Map<String, Double> relatedClasses = couplingMetrics.get(class1);
-                for (String class2 : relatedClasses.keySet()) {
-                    // Skip self-coupling (class with itself)
-                    if (class1.equals(class2)) {
-                        continue;
-                    }
-
-                    // Add class2 node if not already added
-                    if (!classNodes.containsKey(class2)) {
-                        Object classNode2 = graph.insertVertex(parent, null, class2, 200, 100, 80, 30);
-                        classNodes.put(class2, classNode2);
-                    }
-
-                    // Get the coupling weight between class1 and class2
-                    double couplingWeight = relatedClasses.get(class2);
-
-                    // Add the edge with weight (coupling value)
-                    String edgeLabel = String.format("%.2f", couplingWeight);
-                    graph.insertEdge(parent, null, edgeLabel, classNodes.get(class1), classNodes.get(class2));
+            for (int node = 0; node < n; node++) {
+                int visible = viewNode[node];
+                visibleNodes.add(visible);
+                // Only nodes with a shown edge: pruning the edges also hides the nodes they connected
+                if (!cells.containsKey(visible) && kept.containsKey(visible)) {
+                    Object cell = visible >= 0
+                            ? graph.insertVertex(parent, null, couplingGraph.name(visible), 100, 100, 80, 30)
+                            : graph.insertVertex(parent, null, "Cluster " + (-visible - 1) + " (" + clusterSize[-visible - 1]
+                                    + " classes)", 100, 100, 140, 40, "fillColor=#FFE4B5");
+                    cells.put(visible, cell);
+                    view.nodeOfCell.put(cell, visible);
                 }
             }
+            for (Map.Entry<Long, double[]> edge : shown) {
+                // Add the edge with weight (coupling value)
+                String edgeLabel = String.format("%.2f", edge.getValue()[0]);
+                graph.insertEdge(parent, null, edgeLabel, cells.get(EdgeCountMap.from(edge.getKey())),
+                        cells.get(EdgeCountMap.to(edge.getKey())));
+            }
         } finally {
             graph.getModel().endUpdate();
         }
@@ -63,23 +270,28 @@ public class CouplingGraphViewer extends JFrame {
         mxCircleLayout layout = new mxCircleLayout(graph);
         layout.execute(parent);
 
-        // Create and configure the JGraphX component
-        mxGraphComponent graphComponent = new mxGraphComponent(graph);
-        getContentPane().add(graphComponent);
-
-        // Window settings
-        setTitle("Coupling Graph");
-        setSize(800, 600);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setLocationRelativeTo(null);
+        view.nodes = cells.size();
+        view.edges = shown.size();
+        view.prunedEdges = weights.size() - shown.size();
+        view.prunedNodes = visibleNodes.size() - cells.size();
+        view.millis = System.currentTimeMillis() - start;
+        return view;
     }
 
+    // Usage: CouplingGraphViewer <projectPath> [CP]
     public static void main(String[] args) throws IOException {
-        
+        if (args.length < 1) {
+            System.out.println("Usage: CouplingGraphViewer <projectPath> [CP]");
+            return;
+        }
+        double CP = args.length > 1 ? Double.parseDouble(args[1]) : 0.5;
+
         Parser analyzer = new Parser();
-        analyzer.analyzeProject("C:\\Users\\DELL\\eclipse-workspace\\MathOperation"); // Set path to your project
+        analyzer.analyzeProject(args[0], Runtime.getRuntime().availableProcessors());
+        CouplingGraph graph = analyzer.getCouplingGraph();
+        List<HierarchicalClustering.Cluster> clusters = new HierarchicalClustering().performClustering(graph, CP);
         SwingUtilities.invokeLater(() -> {
-        	CouplingGraphViewer viewer = new CouplingGraphViewer();
+        	CouplingGraphViewer viewer = new CouplingGraphViewer(graph, clusters);
             viewer.setVisible(true);
         });
     }
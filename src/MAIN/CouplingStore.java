@@ -0,0 +1,205 @@
+package MAIN;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Project-wide coupling data owned by one Parser.
+// Class names are interned to dense ids and the pair counts live in striped primitive maps,
+// so parser workers can add their FileAnalysis results concurrently and two Parser instances never share anything.
+// A FileAnalysis added earlier can be removed again (to replace a file that changed): counts are subtracted and
+// classes and methods stay listed as long as at least one file still declares them.
+// Each name's declaration count is updated together with its listing, inside one compute() on that name, so adds and
+// removes of different files can run concurrently (a file declaring a class is always added before it is removed).
+public class CouplingStore {
+
+    private static final int STRIPES = 16; // Power of two
+
+    private final Map<String, Set<String>> classMethodsMap = new ConcurrentHashMap<>();
+    private final Set<String> userDefinedClasses = ConcurrentHashMap.newKeySet();
+    private final SymbolTable symbols = new SymbolTable();
+    private final EdgeCountMap[] classPairCouplingCount = new EdgeCountMap[STRIPES]; // Guarded by the stripe itself
+    private final LongAdder totalCouplingCount = new LongAdder(); // Total invocations between any classes
+    private final SymbolTable methodSymbols = new SymbolTable(); // "Class#method" names
+    private final EdgeCountMap[] methodCallCount = new EdgeCountMap[STRIPES]; // Guarded by the stripe itself
+    private final Map<String, Integer> declarations = new ConcurrentHashMap<>(); // Files declaring each class / Class#method
+    private final Map<String, Integer> userDefinedDeclarations = new ConcurrentHashMap<>();
+
+    public CouplingStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            classPairCouplingCount[i] = new EdgeCountMap();
+            methodCallCount[i] = new EdgeCountMap();
+        }
+    }
+
+    // Add the results of one file. Counts are plain sums, so the order of the calls does not matter.
+    public void add(FileAnalysis analysis) {
+        // The class is declared before its methods and released after them, so its entry exists while they are listed
+        for (Map.Entry<String, Set<String>> entry : analysis.classMethodsMap.entrySet()) {
+            String className = entry.getKey();
+            declarations.compute(className, (k, count) -> {
+                classMethodsMap.computeIfAbsent(className, name -> ConcurrentHashMap.newKeySet());
+                return count == null ? 1 : count + 1;
+            });
+            for (String method : entry.getValue()) {
+                declarations.compute(MethodCallGraph.methodName(className, method), (k, count) -> {
+                    classMethodsMap.get(className).add(method);
+                    return count == null ? 1 : count + 1;
+                });
+            }
+        }
+        for (String className : analysis.userDefinedClasses) {
+            userDefinedDeclarations.compute(className, (k, count) -> {
+                userDefinedClasses.add(className);
+                return count == null ? 1 : count + 1;
+            });
+        }
+
+        // Translate the file-local ids to the project ids
+        SymbolTable localSymbols = analysis.symbols;
+        int[] globalIds = new int[localSymbols.size()];
+        for (int i = 0; i < globalIds.length; i++) {
+            globalIds[i] = symbols.intern(localSymbols.nameOf(i));
+        }
+        analysis.couplingCount.forEach((from, to, count) -> addCoupling(globalIds[from], globalIds[to], count));
+        totalCouplingCount.add(analysis.totalCouplingCount);
+
+        SymbolTable localMethods = analysis.methodSymbols;
+        int[] globalMethodIds = new int[localMethods.size()];
+        for (int i = 0; i < globalMethodIds.length; i++) {
+            globalMethodIds[i] = methodSymbols.intern(localMethods.nameOf(i));
+        }
+        analysis.methodCalls.forEach((from, to, count) -> addTo(methodCallCount, globalMethodIds[from], globalMethodIds[to], count));
+    }
+
+    // Undo add(analysis) for an analysis that was added before (may run concurrently with other adds and removes)
+    public void remove(FileAnalysis analysis) {
+        for (Map.Entry<String, Set<String>> entry : analysis.classMethodsMap.entrySet()) {
+            String className = entry.getKey();
+            for (String method : entry.getValue()) {
+                release(declarations, MethodCallGraph.methodName(className, method), () -> classMethodsMap.get(className).remove(method));
+            }
+            release(declarations, className, () -> classMethodsMap.remove(className));
+        }
+        for (String className : analysis.userDefinedClasses) {
+            release(userDefinedDeclarations, className, () -> userDefinedClasses.remove(className));
+        }
+
+        // Symbols are never released, ids stay stable for the lifetime of the store
+        SymbolTable localSymbols = analysis.symbols;
+        int[] globalIds = new int[localSymbols.size()];
+        for (int i = 0; i < globalIds.length; i++) {
+            globalIds[i] = symbols.intern(localSymbols.nameOf(i));
+        }
+        analysis.couplingCount.forEach((from, to, count) -> addCoupling(globalIds[from], globalIds[to], -count));
+        totalCouplingCount.add(-analysis.totalCouplingCount);
+
+        SymbolTable localMethods = analysis.methodSymbols;
+        int[] globalMethodIds = new int[localMethods.size()];
+        for (int i = 0; i < globalMethodIds.length; i++) {
+            globalMethodIds[i] = methodSymbols.intern(localMethods.nameOf(i));
+        }
+        analysis.methodCalls.forEach((from, to, count) -> addTo(methodCallCount, globalMethodIds[from], globalMethodIds[to], -count));
+    }
+
+    // Decrement a declaration count and, in the same atomic step, unlist the name when no file declares it any more
+    private static void release(Map<String, Integer> counts, String name, Runnable unlist) {
+        counts.computeIfPresent(name, (k, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            unlist.run();
+            return null;
+        });
+    }
+
+    private void addCoupling(int from, int to, long count) {
+        addTo(classPairCouplingCount, from, to, count);
+    }
+
+    private static void addTo(EdgeCountMap[] stripes, int from, int to, long count) {
+        EdgeCountMap stripe = stripes[from & (STRIPES - 1)];
+        synchronized (stripe) {
+            stripe.add(from, to, count);
+        }
+    }
+
+    public Map<String, Set<String>> getClassMethodsMap() {
+        return Collections.unmodifiableMap(classMethodsMap);
+    }
+
+    public Set<String> getUserDefinedClasses() {
+        return Collections.unmodifiableSet(userDefinedClasses);
+    }
+
+    // Ids used by forEachCoupling()
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    // Visit every (caller class, called class, invocations) triple
+    public void forEachCoupling(EdgeCountMap.EdgeConsumer consumer) {
+        for (EdgeCountMap stripe : classPairCouplingCount) {
+            synchronized (stripe) {
+                stripe.forEach(consumer);
+            }
+        }
+    }
+
+    // Ids used by forEachMethodCall()
+    public SymbolTable getMethodSymbols() {
+        return methodSymbols;
+    }
+
+    // Visit every (caller method, called method, invocations) triple
+    public void forEachMethodCall(EdgeCountMap.EdgeConsumer consumer) {
+        for (EdgeCountMap stripe : methodCallCount) {
+            synchronized (stripe) {
+                stripe.forEach(consumer);
+            }
+        }
+    }
+
+    public boolean hasCouplings() {
+        for (EdgeCountMap stripe : classPairCouplingCount) {
+            synchronized (stripe) {
+                if (!stripe.isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public long getTotalCouplingCount() {
+        return totalCouplingCount.sum();
+    }
+
+    // Freeze the current counts into an immutable, array-based graph of coupling metrics
+    public CouplingGraph toGraph() {
+        return CouplingGraph.fromStore(this);
+    }
+
+    // Freeze the current method calls into an immutable, array-based call graph
+    public MethodCallGraph toMethodCallGraph() {
+        return MethodCallGraph.fromStore(this);
+    }
+
+    public void clear() {
+        classMethodsMap.clear();
+        userDefinedClasses.clear();
+        declarations.clear();
+        userDefinedDeclarations.clear();
+        for (EdgeCountMap stripe : classPairCouplingCount) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        totalCouplingCount.reset();
+        for (EdgeCountMap stripe : methodCallCount) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+}
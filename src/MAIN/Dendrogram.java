@@ -0,0 +1,308 @@
+package MAIN;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ForkJoinPool;
+
+// Complete merge history of the agglomerative clustering, from n singleton clusters down to one.
+//
+// The greedy merge order does not depend on CP: performClustering(CP) applies the merges of this sequence
+// until the first one whose height (average coupling) is <= CP, then keeps going until at most M/2 modules
+// remain. A cut is therefore a prefix of the history, found by binary search on the running minimum of the
+// heights, and applied with a union-find, without touching the coupling matrix again.
+//
+// A saved dendrogram records the project it was computed from (absolute, normalized root) and a fingerprint of
+// its .java files (relative path, mtime and size), so that a stale file is recognized and recomputed.
+//
+// File layout (big endian):
+//   int magic, int version, string source, long fingerprint, int classCount, string name*,
+//   { int clusterA, int clusterB, double height }*
+//   string: int byteLength, UTF-8 bytes
+public class Dendrogram {
+
+    private static final int MAGIC = 0x43504C44; // "CPLD"
+    private static final int VERSION = 2;
+
+    private final String[] names;
+    private final int[] mergeA; // Cluster kept by merge i (the smallest class index of the cluster)
+    private final int[] mergeB; // Cluster merged into it
+    private final double[] height; // Average coupling between the two clusters at merge i
+    private final double[] runningMin; // min(height[0 .. i]), non-increasing
+    private final String source; // Project root the merges were computed from, "" if unknown
+    private final long fingerprint; // sourceFingerprint(source) at that time
+
+    private Dendrogram(String[] names, int[] mergeA, int[] mergeB, double[] height, String source, long fingerprint) {
+        this.source = source;
+        this.fingerprint = fingerprint;
+        this.names = names;
+        this.mergeA = mergeA;
+        this.mergeB = mergeB;
+        this.height = height;
+        this.runningMin = new double[height.length];
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < height.length; i++) {
+            min = Math.min(min, height[i]);
+            runningMin[i] = min;
+        }
+    }
+
+    // Run the clustering engine to the end and record every merge (pool may be null for a sequential run)
+    static Dendrogram build(CouplingGraph graph, ForkJoinPool pool, AgglomerativeClustering.MergeListener listener) {
+        int n = graph.size();
+        String[] names = new String[n];
+        for (int node = 0; node < n; node++) {
+            names[node] = graph.name(node);
+        }
+        int merges = Math.max(0, n - 1);
+        int[] mergeA = new int[merges];
+        int[] mergeB = new int[merges];
+        double[] height = new double[merges];
+        int[] step = { 0 };
+        new AgglomerativeClustering(graph, pool).run(Double.NEGATIVE_INFINITY, 1, (a, b, coupling, forced) -> {
+            mergeA[step[0]] = a;
+            mergeB[step[0]] = b;
+            height[step[0]] = coupling;
+            step[0]++;
+            if (listener != null) {
+                listener.onMerge(a, b, coupling, forced);
+            }
+        });
+        return new Dendrogram(names, mergeA, mergeB, height, "", 0);
+    }
+
+    // Same merges, recorded as computed from the project at root whose files had this fingerprint
+    public Dendrogram withSource(Path root, long fingerprint) {
+        return new Dendrogram(names, mergeA, mergeB, height, key(root), fingerprint);
+    }
+
+    // True when this dendrogram was computed from root and none of its .java files changed since
+    public boolean matches(Path root, long fingerprint) {
+        return source.equals(key(root)) && this.fingerprint == fingerprint;
+    }
+
+    private static String key(Path root) {
+        return root.toAbsolutePath().normalize().toString();
+    }
+
+    // Order-independent hash of the relative path, mtime and size of every .java file under root
+    public static long sourceFingerprint(Path root) throws IOException {
+        Path base = root.toAbsolutePath().normalize();
+        long[] fingerprint = { 0 };
+        Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                    long hash = mix(base.relativize(file).toString().hashCode());
+                    hash = mix(hash ^ attributes.lastModifiedTime().toMillis());
+                    hash = mix(hash ^ attributes.size());
+                    fingerprint[0] += hash;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return fingerprint[0];
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int node) {
+        return names[node];
+    }
+
+    public int mergeCount() {
+        return height.length;
+    }
+
+    public int mergeA(int merge) {
+        return mergeA[merge];
+    }
+
+    public int mergeB(int merge) {
+        return mergeB[merge];
+    }
+
+    public double height(int merge) {
+        return height[merge];
+    }
+
+    // Merges done by performClustering with this CP and module limit: those above CP, then as many as needed
+    // to get down to maxModules clusters
+    public int mergesFor(double CP, int maxModules) {
+        int low = 0;
+        int high = runningMin.length;
+        while (low < high) { // First merge whose height is <= CP
+            int middle = (low + high) >>> 1;
+            if (runningMin[middle] <= CP) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return Math.min(runningMin.length, Math.max(low, names.length - maxModules));
+    }
+
+    // Same with the M/2 limit of performClustering
+    public int mergesFor(double CP) {
+        return mergesFor(CP, names.length / 2);
+    }
+
+    // Number of clusters left after a cut
+    public int moduleCount(double CP) {
+        return names.length - mergesFor(CP);
+    }
+
+    // Representative (smallest class index) of the cluster of every class after the first merges
+    public int[] cut(int merges) {
+        int[] parent = new int[names.length];
+        for (int node = 0; node < parent.length; node++) {
+            parent[node] = node;
+        }
+        for (int i = 0; i < merges; i++) {
+            parent[mergeB[i]] = mergeA[i]; // Both are roots: a merged cluster is never merged again
+        }
+        for (int node = 0; node < parent.length; node++) {
+            parent[node] = find(parent, node);
+        }
+        return parent;
+    }
+
+    public int[] cut(double CP) {
+        return cut(mergesFor(CP));
+    }
+
+    private static int find(int[] parent, int node) {
+        int root = node;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[node] != root) {
+            int next = parent[node];
+            parent[node] = root;
+            node = next;
+        }
+        return root;
+    }
+
+    public void save(Path file) throws IOException {
+        byte[] encodedSource = source.getBytes(StandardCharsets.UTF_8);
+        byte[][] encoded = new byte[names.length][];
+        long length = 12 + 4 + encodedSource.length + 8;
+        for (int node = 0; node < names.length; node++) {
+            encoded[node] = names[node].getBytes(StandardCharsets.UTF_8);
+            length += 4 + encoded[node].length;
+        }
+        length += 16L * height.length;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Dendrogram too large: " + length + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(encodedSource.length);
+        buffer.put(encodedSource);
+        buffer.putLong(fingerprint);
+        buffer.putInt(names.length);
+        for (byte[] name : encoded) {
+            buffer.putInt(name.length);
+            buffer.put(name);
+        }
+        for (int i = 0; i < height.length; i++) {
+            buffer.putInt(mergeA[i]);
+            buffer.putInt(mergeB[i]);
+            buffer.putDouble(height[i]);
+        }
+        buffer.flip();
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The file is read into the heap rather than mapped: a mapping would keep it open, and on Windows make the
+    // replacement done by save() fail
+    public static Dendrogram load(Path file) throws IOException {
+        try {
+            ByteBuffer buffer = readFully(file);
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a dendrogram file: " + file);
+            }
+            String source = readString(buffer, file);
+            long fingerprint = buffer.getLong();
+            int n = buffer.getInt();
+            if (n < 0 || n > buffer.remaining() / 4) {
+                throw new IOException("Corrupt dendrogram file: " + file);
+            }
+            String[] names = new String[n];
+            for (int node = 0; node < n; node++) {
+                names[node] = readString(buffer, file);
+            }
+
+            int merges = Math.max(0, n - 1);
+            int[] mergeA = new int[merges];
+            int[] mergeB = new int[merges];
+            double[] height = new double[merges];
+            for (int i = 0; i < merges; i++) {
+                mergeA[i] = buffer.getInt();
+                mergeB[i] = buffer.getInt();
+                height[i] = buffer.getDouble();
+                if (mergeA[i] < 0 || mergeA[i] >= n || mergeB[i] < 0 || mergeB[i] >= n) {
+                    throw new IOException("Corrupt dendrogram file: " + file);
+                }
+            }
+            return new Dendrogram(names, mergeA, mergeB, height, source, fingerprint);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated dendrogram file: " + file, e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, Path file) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt dendrogram file: " + file);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer readFully(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Dendrogram file too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break; // Truncated while reading, the parse rejects it
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
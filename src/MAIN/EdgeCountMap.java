@@ -0,0 +1,141 @@
+package MAIN;
+
+import java.util.Arrays;
+
+// Open-addressing hash map from a directed class pair (from, to) to an invocation count.
+// The pair is packed into a single long key, so adding an edge allocates nothing.
+// Not thread-safe: each instance is either owned by one worker or guarded by its caller.
+public class EdgeCountMap {
+
+    // Callback used to iterate over the edges without boxing
+    public interface EdgeConsumer {
+        void accept(int from, int to, long count);
+    }
+
+    private static final long EMPTY = -1L; // Never a valid key, ids are non-negative
+
+    private long[] keys;
+    private long[] counts;
+    private int size = 0;
+
+    public EdgeCountMap() {
+        this(16);
+    }
+
+    public EdgeCountMap(int expectedEdges) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedEdges * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    public static int from(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int to(long key) {
+        return (int) key;
+    }
+
+    // Negative deltas subtract, an edge whose count drops to 0 is removed
+    public void add(int from, int to, long delta) {
+        long key = key(from, to);
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            if (delta == 0) {
+                return;
+            }
+            keys[slot] = key;
+            counts[slot] = delta;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        } else {
+            counts[slot] += delta;
+            if (counts[slot] == 0) {
+                removeSlot(slot);
+            }
+        }
+    }
+
+    public long get(int from, int to) {
+        int slot = slot(key(from, to));
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(EdgeConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(from(keys[i]), to(keys[i]), counts[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    // Linear probing, returns the slot holding the key or the empty slot where it belongs
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Backward-shift deletion: the following entries of the probe run are moved up into the hole
+    // when their home slot allows it, so that lookups never stop early on an empty slot
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                counts[hole] = counts[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        counts[hole] = 0;
+        size--;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package MAIN;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Coupling aggregation with bounded memory, for corpora whose class pairs do not fit in the heap.
+//
+// The couplings of each FileAnalysis are reduced into an in-memory table of undirected class pairs. When the
+// table reaches half of the memory budget it is sorted and written to a run file. finish() then merges the runs
+// like an external merge sort (at most fanIn runs at a time, with extra passes when there are more), summing
+// the counts of equal pairs, and streams the coupling metrics out in pair order. Only the table and the
+// buffers of the runs being merged are in memory, whatever the size of the corpus.
+//
+// Pairs are keyed by class name rather than SymbolTable id, since a symbol table also grows with the corpus.
+// The metric is the one of Parser.getCouplingMetrics(): max(count(a -> b), count(b -> a)) / total invocations.
+//
+// Run file: { UTF first, UTF second, long forward, long backward }*, with first <= second,
+// forward = count(first -> second) and backward = count(second -> first).
+public class ExternalCouplingAggregator implements Closeable {
+
+    // Receives every coupled pair once, first <= second
+    public interface MetricConsumer {
+        void accept(String first, String second, long invocations, double coupling) throws IOException;
+    }
+
+    private static final int RUN_BUFFER = 64 * 1024;
+    private static final int MAX_FAN_IN = 64;
+    private static final int ENTRY_OVERHEAD = 160; // Approximate heap cost of a table entry besides the name chars
+
+    private final long memoryBudget;
+    private final int fanIn;
+    private final Path directory;
+    private Map<PairKey, long[]> table = new HashMap<>(); // pair -> { forward, backward }
+    private final List<Path> runs = new ArrayList<>();
+    private long tableBytes = 0;
+    private long totalCouplingCount = 0;
+    private int runCounter = 0;
+    private IOException failure; // First spill that failed; add() then ignores its input and finish() throws
+    private boolean spilling = false; // A full table is being written outside the lock (at most one at a time)
+
+    private static final class PairKey implements Comparable<PairKey> {
+        final String first;
+        final String second;
+
+        PairKey(String first, String second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public int compareTo(PairKey other) {
+            int c = first.compareTo(other.first);
+            return c != 0 ? c : second.compareTo(other.second);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PairKey && first.equals(((PairKey) other).first) && second.equals(((PairKey) other).second);
+        }
+
+        @Override
+        public int hashCode() {
+            return first.hashCode() * 31 + second.hashCode();
+        }
+    }
+
+    // memoryBudget: heap used for aggregation, in bytes; run files go to a new temporary directory
+    public ExternalCouplingAggregator(long memoryBudget) throws IOException {
+        this(memoryBudget, Files.createTempDirectory("coupling-runs"));
+    }
+
+    public ExternalCouplingAggregator(long memoryBudget, Path directory) throws IOException {
+        this.memoryBudget = memoryBudget;
+        this.fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memoryBudget / (2L * RUN_BUFFER)));
+        this.directory = Files.createDirectories(directory);
+    }
+
+    // Add the couplings of one file (thread-safe, can be used as the sink of Parser.forEachFileAnalysis).
+    // A run file that cannot be written is not thrown from here but from finish(), which the caller always reaches.
+    // A full table is swapped for an empty one under the lock and written by the calling thread outside it, so the
+    // other workers keep adding meanwhile; one that fills the new table before that run is written waits for it,
+    // which keeps at most two tables (the memory budget) in memory.
+    public void add(FileAnalysis analysis) {
+        Map<PairKey, long[]> full;
+        Path run;
+        synchronized (this) {
+            if (failure != null) {
+                return; // The result is lost anyway
+            }
+            addToTable(analysis);
+            if (tableBytes <= memoryBudget / 2) {
+                return;
+            }
+            try {
+                while (spilling) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return; // The table stays full, a later add() or finish() writes it
+            }
+            if (tableBytes <= memoryBudget / 2 || failure != null) {
+                return; // Written by another thread meanwhile
+            }
+            full = table;
+            table = new HashMap<>();
+            tableBytes = 0;
+            run = newRunFile();
+            spilling = true;
+        }
+
+        IOException error = null;
+        try {
+            writeRun(run, full);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            spilling = false;
+            if (error == null) {
+                runs.add(run);
+            } else if (failure == null) {
+                failure = error;
+            }
+            notifyAll();
+        }
+    }
+
+    // Sum the couplings of one file into the table (holding the lock)
+    private void addToTable(FileAnalysis analysis) {
+        SymbolTable symbols = analysis.symbols;
+        analysis.couplingCount.forEach((from, to, count) -> {
+            String caller = symbols.nameOf(from);
+            String called = symbols.nameOf(to);
+            boolean forward = caller.compareTo(called) <= 0;
+            PairKey key = forward ? new PairKey(caller, called) : new PairKey(called, caller);
+            long[] counts = table.get(key);
+            if (counts == null) {
+                counts = new long[2];
+                table.put(key, counts);
+                tableBytes += ENTRY_OVERHEAD + 2L * (caller.length() + called.length());
+            }
+            counts[forward ? 0 : 1] += count;
+        });
+        totalCouplingCount += analysis.totalCouplingCount;
+    }
+
+    public synchronized long getTotalCouplingCount() {
+        return totalCouplingCount;
+    }
+
+    // Number of run files written so far
+    public synchronized int getRunCount() {
+        return runs.size();
+    }
+
+    // Sort the table and write it as a new run (holding the lock)
+    private void spill() throws IOException {
+        Path run = newRunFile();
+        writeRun(run, table);
+        runs.add(run);
+        table.clear();
+        tableBytes = 0;
+    }
+
+    private static void writeRun(Path run, Map<PairKey, long[]> pairs) throws IOException {
+        List<Map.Entry<PairKey, long[]>> entries = new ArrayList<>(pairs.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        try (DataOutputStream out = openRun(run)) {
+            for (Map.Entry<PairKey, long[]> entry : entries) {
+                writeRecord(out, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+    }
+
+    // Merge everything added so far and stream the metrics of every coupled pair, in (first, second) order
+    public synchronized void finish(MetricConsumer consumer) throws IOException {
+        try {
+            while (spilling) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while a run file was being written");
+        }
+        if (failure != null) {
+            throw new IOException("Could not write a run file in " + directory, failure);
+        }
+        double divisor = totalCouplingCount == 0 ? 1 : totalCouplingCount; // Avoid division by zero
+
+        if (runs.isEmpty()) {
+            // Everything fitted in memory
+            List<Map.Entry<PairKey, long[]>> entries = new ArrayList<>(table.entrySet());
+            entries.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<PairKey, long[]> entry : entries) {
+                long invocations = Math.max(entry.getValue()[0], entry.getValue()[1]);
+                consumer.accept(entry.getKey().first, entry.getKey().second, invocations, invocations / divisor);
+            }
+            return;
+        }
+        if (!table.isEmpty()) {
+            spill();
+        }
+
+        // Intermediate passes until a single merge can read every run
+        while (runs.size() > fanIn) {
+            List<Path> group = new ArrayList<>(runs.subList(0, fanIn));
+            runs.subList(0, fanIn).clear();
+            Path merged = newRunFile();
+            try (DataOutputStream out = openRun(merged)) {
+                merge(group, (pair, forward, backward) -> writeRecord(out, pair, forward, backward));
+            }
+            for (Path run : group) {
+                Files.delete(run);
+            }
+            runs.add(merged);
+        }
+
+        merge(runs, (pair, forward, backward) -> {
+            long invocations = Math.max(forward, backward);
+            consumer.accept(pair.first, pair.second, invocations, invocations / divisor);
+        });
+    }
+
+    private interface RecordConsumer {
+        void accept(PairKey pair, long forward, long backward) throws IOException;
+    }
+
+    // k-way merge of sorted runs, equal pairs are summed before being handed to the consumer
+    private void merge(List<Path> group, RecordConsumer consumer) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>();
+        try {
+            for (Path run : group) {
+                RunReader reader = new RunReader(run);
+                if (reader.advance()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                PairKey pair = reader.pair;
+                long forward = reader.forward;
+                long backward = reader.backward;
+                requeue(queue, reader);
+                while (!queue.isEmpty() && queue.peek().pair.equals(pair)) {
+                    RunReader same = queue.poll();
+                    forward += same.forward;
+                    backward += same.backward;
+                    requeue(queue, same);
+                }
+                consumer.accept(pair, forward, backward);
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void requeue(PriorityQueue<RunReader> queue, RunReader reader) throws IOException {
+        if (reader.advance()) {
+            queue.add(reader);
+        } else {
+            reader.close();
+        }
+    }
+
+    private Path newRunFile() {
+        return directory.resolve("run-" + (runCounter++) + ".bin");
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER));
+    }
+
+    private static void writeRecord(DataOutputStream out, PairKey pair, long forward, long backward) throws IOException {
+        out.writeUTF(pair.first);
+        out.writeUTF(pair.second);
+        out.writeLong(forward);
+        out.writeLong(backward);
+    }
+
+    // Sequential reader of one run, ordered by its current pair (then by file, to keep merges deterministic)
+    private static final class RunReader implements Comparable<RunReader>, Closeable {
+        private final DataInputStream in;
+        private final Path file;
+        PairKey pair;
+        long forward;
+        long backward;
+
+        RunReader(Path file) throws IOException {
+            this.file = file;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), RUN_BUFFER));
+        }
+
+        boolean advance() throws IOException {
+            String first;
+            try {
+                first = in.readUTF();
+            } catch (EOFException e) {
+                return false;
+            }
+            pair = new PairKey(first, in.readUTF());
+            forward = in.readLong();
+            backward = in.readLong();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            int c = pair.compareTo(other.pair);
+            return c != 0 ? c : file.compareTo(other.file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // Delete the run files and their directory
+    @Override
+    public synchronized void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        table.clear();
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "run-*.bin")) {
+            for (Path run : leftovers) {
+                Files.deleteIfExists(run);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    // Usage: ExternalCouplingAggregator <projectPath> <output.csv> [budgetMB] [threads]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: ExternalCouplingAggregator <projectPath> <output.csv> [budgetMB] [threads]");
+            return;
+        }
+        long budget = (args.length > 2 ? Long.parseLong(args[2]) : 256) * 1024 * 1024;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        try (ExternalCouplingAggregator aggregator = new ExternalCouplingAggregator(budget);
+             Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(args[1])),
+                     StandardCharsets.UTF_8), RUN_BUFFER)) {
+            new Parser().forEachFileAnalysis(args[0], threads, aggregator::add);
+            CouplingExporter.PairWriter writer = CouplingExporter.PairWriter.of(CouplingExporter.Format.CSV, out);
+            writer.begin();
+            aggregator.finish(writer);
+            writer.end();
+            System.out.println("Coupling metrics written to " + args[1] + " (" + aggregator.getRunCount() + " runs)");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package MAIN;
+
+import java.util.*;
+
+// Coupling data collected from a single compilation unit.
+// Each worker fills its own instance, the results are merged into the Parser store afterwards.
+// Class names are interned in a small per-file symbol table, edges use those local ids.
+// Method-to-method calls are kept the same way, with methods named "Class#method" in their own table.
+public class FileAnalysis {
+
+    final Map<String, Set<String>> classMethodsMap = new HashMap<>();
+    final Set<String> userDefinedClasses = new HashSet<>();
+    final SymbolTable symbols = new SymbolTable();
+    final EdgeCountMap couplingCount = new EdgeCountMap(); // (caller class, called class) -> number of invocations
+    int totalCouplingCount = 0; // Number of user-defined invocations in this file
+    int invocationsSkipped = 0; // Invocations whose target class could not be determined
+    int invocationsNotUserDefined = 0; // Invocations on library classes
+    final SymbolTable methodSymbols = new SymbolTable();
+    final EdgeCountMap methodCalls = new EdgeCountMap(); // (caller method, called method) -> number of invocations
+
+    void recordCoupling(String callerClass, String calledClass) {
+        couplingCount.add(symbols.intern(callerClass), symbols.intern(calledClass), 1);
+        totalCouplingCount++;
+    }
+
+    void recordMethodCall(String callerClass, String callerMethod, String calledClass, String calledMethod) {
+        methodCalls.add(methodSymbols.intern(MethodCallGraph.methodName(callerClass, callerMethod)),
+                methodSymbols.intern(MethodCallGraph.methodName(calledClass, calledMethod)), 1);
+    }
+
+    public Map<String, Set<String>> getClassMethodsMap() {
+        return classMethodsMap;
+    }
+
+    public Set<String> getUserDefinedClasses() {
+        return userDefinedClasses;
+    }
+
+    // Ids used by getCouplingCount(), local to this file
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public EdgeCountMap getCouplingCount() {
+        return couplingCount;
+    }
+
+    // Ids used by getMethodCalls(), local to this file
+    public SymbolTable getMethodSymbols() {
+        return methodSymbols;
+    }
+
+    public EdgeCountMap getMethodCalls() {
+        return methodCalls;
+    }
+
+    public int getTotalCouplingCount() {
+        return totalCouplingCount;
+    }
+}
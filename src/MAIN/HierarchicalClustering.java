@@ -1,18 +1,57 @@
 package MAIN;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class HierarchicalClustering {
 
+    private final AnalysisMetrics metrics;
+    private ForkJoinPool pool; // null : clustering séquentiel
+
+    public HierarchicalClustering() {
+        this(new AnalysisMetrics());
+    }
+
+    // Les durées des étapes de fusion sont enregistrées dans metrics
+    public HierarchicalClustering(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Calcul parallèle de la matrice initiale et des mises à jour après fusion (même résultat qu'en séquentiel)
+    public void setParallel(boolean parallel) {
+        this.pool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
     // Structure de données pour représenter les clusters
-    private static class Cluster {
+    static class Cluster {
         Set<String> classes = new HashSet<>();
+        int[] members; // Indices des classes dans le CouplingGraph
         
-        public Cluster(String className) {
+        public Cluster(String className, int node) {
             this.classes.add(className);
+            this.members = new int[] { node };
+        }
+
+        // Cluster formé directement de plusieurs classes du graphe
+        Cluster(CouplingGraph graph, int[] members) {
+            for (int node : members) {
+                this.classes.add(graph.name(node));
+            }
+            this.members = members;
         }
 
         public void merge(Cluster other) {
             this.classes.addAll(other.classes);
+            int size = members.length;
+            members = Arrays.copyOf(members, size + other.members.length);
+            System.arraycopy(other.members, 0, members, size, other.members.length);
         }
 
         @Override
@@ -21,18 +60,15 @@ public class HierarchicalClustering {
         }
 
         // Calcul du couplage moyen d'un cluster
-        public double calculateAverageCoupling(Map<String, Map<String, Double>> couplingMetrics) {
+        public double calculateAverageCoupling(CouplingGraph graph) {
             double totalCoupling = 0;
             int count = 0;
-            List<String> classList = new ArrayList<>(classes);
-
-            for (int i = 0; i < classList.size(); i++) {
-                for (int j = i + 1; j < classList.size(); j++) {
-                    String classA = classList.get(i);
-                    String classB = classList.get(j);
-                    Double coupling = couplingMetrics.getOrDefault(classA, new HashMap<>()).get(classB);
-                    if (coupling != null) {
-                        totalCoupling += coupling;
+
+            for (int i = 0; i < members.length; i++) {
+                for (int j = i + 1; j < members.length; j++) {
+                    int position = graph.edgePosition(members[i], members[j]);
+                    if (position >= 0) {
+                        totalCoupling += graph.weightAt(position);
                         count++;
                     }
                 }
@@ -44,118 +80,130 @@ public class HierarchicalClustering {
 
     // Fonction principale pour exécuter l'algorithme de clustering hiérarchique
     public List<Cluster> performClustering(Map<String, Map<String, Double>> couplingMetrics, double CP) {
-        // Créer une map pour garder trace des clusters
-        Map<String, Cluster> classToClusterMap = new HashMap<>();
-        List<Cluster> clusters = new ArrayList<>();
+        return performClustering(CouplingGraph.fromMetrics(couplingMetrics), CP);
+    }
 
+    // Même algorithme, directement sur le graphe de couplage (sans maps intermédiaires).
+    // Les couplages moyens entre clusters sont mis à jour de façon incrémentale (voir AgglomerativeClustering).
+    public List<Cluster> performClustering(CouplingGraph graph, double CP) {
+        return performClustering(buildDendrogram(graph), CP);
+    }
+
+    // Historique complet des fusions jusqu'à un seul cluster ; l'ordre des fusions ne dépend pas de CP,
+    // donc le dendrogramme (qui peut être enregistré avec save) suffit pour tester d'autres seuils
+    public Dendrogram buildDendrogram(CouplingGraph graph) {
+        long[] lastStep = { System.nanoTime() };
+        return Dendrogram.build(graph, pool, (a, b, coupling, forced) -> {
+            long now = System.nanoTime();
+            metrics.recordClusteringStep(now - lastStep[0]);
+            lastStep[0] = now;
+        });
+    }
+
+    // Clusters obtenus en rejouant les fusions du dendrogramme : tant que le couplage moyen est supérieur à CP,
+    // puis jusqu'à ce que l'application contienne au plus M/2 modules. Aucun couplage n'est recalculé.
+    public List<Cluster> performClustering(Dendrogram dendrogram, double CP) {
         // Initialiser chaque classe comme un cluster
-        for (String className : couplingMetrics.keySet()) {
-            Cluster cluster = new Cluster(className);
-            classToClusterMap.put(className, cluster);
-            clusters.add(cluster);
+        int n = dendrogram.size();
+        Cluster[] clusterOf = new Cluster[n];
+        for (int node = 0; node < n; node++) {
+            clusterOf[node] = new Cluster(dendrogram.name(node), node);
         }
 
+        int aboveCP = dendrogram.mergesFor(CP, n); // Fusions dont le couplage est supérieur à CP
+        int merges = dendrogram.mergesFor(CP);
         int step = 1;
-        
-        // Tant qu'il y a plus d'un cluster, on fusionne les plus couplés
-        while (clusters.size() > 1) {
-            double maxCoupling = -1;
-            Cluster clusterA = null;
-            Cluster clusterB = null;
-
-            // Trouver les deux clusters avec le couplage maximum
-            for (int i = 0; i < clusters.size(); i++) {
-                for (int j = i + 1; j < clusters.size(); j++) {
-                    Cluster a = clusters.get(i);
-                    Cluster b = clusters.get(j);
-                    
-                    // Calculer le couplage moyen entre deux clusters
-                    double coupling = calculateAverageCoupling(a, b, couplingMetrics);
-                    if (coupling > maxCoupling) {
-                        maxCoupling = coupling;
-                        clusterA = a;
-                        clusterB = b;
-                    }
+        for (int i = 0; i < merges; i++) {
+            Cluster clusterA = clusterOf[dendrogram.mergeA(i)];
+            Cluster clusterB = clusterOf[dendrogram.mergeB(i)];
+            boolean forced = i >= aboveCP;
+            if (AnalysisMetrics.TRACE) {
+                if (forced) {
+                    System.out.println("Fusionner pour respecter le nombre de modules : Fusion de " + clusterA + " et " + clusterB);
+                } else {
+                    System.out.println("Étape " + step + ": Fusion de " + clusterA + " et " + clusterB + " (Couplage = " + dendrogram.height(i) + ")");
                 }
             }
-
-            // Fusionner les deux clusters les plus couplés si leur couplage moyen est supérieur à CP
-            if (clusterA != null && clusterB != null && maxCoupling > CP) {
-                System.out.println("Étape " + step + ": Fusion de " + clusterA + " et " + clusterB + " (Couplage = " + maxCoupling + ")");
-                clusterA.merge(clusterB);
-                clusters.remove(clusterB);
+            if (!forced) {
                 step++;
-            } else {
-                break; // Aucun couplage valide trouvé, fin de la fusion
             }
+            clusterA.merge(clusterB);
+            clusterOf[dendrogram.mergeB(i)] = null;
         }
 
-        // Vérifier si l'application contient au plus M/2 modules
-        int maxModules = couplingMetrics.size() / 2;
-        while (clusters.size() > maxModules) {
-            // Fusionner les clusters ayant le couplage moyen le plus élevé
-            double maxCoupling = -1;
-            Cluster clusterA = null;
-            Cluster clusterB = null;
-
-            for (int i = 0; i < clusters.size(); i++) {
-                for (int j = i + 1; j < clusters.size(); j++) {
-                    Cluster a = clusters.get(i);
-                    Cluster b = clusters.get(j);
-                    
-                    double coupling = calculateAverageCoupling(a, b, couplingMetrics);
-                    if (coupling > maxCoupling) {
-                        maxCoupling = coupling;
-                        clusterA = a;
-                        clusterB = b;
-                    }
-                }
-            }
-
-            // Fusionner les deux clusters les plus couplés
-            if (clusterA != null && clusterB != null) {
-                System.out.println("Fusionner pour respecter le nombre de modules : Fusion de " + clusterA + " et " + clusterB);
-                clusterA.merge(clusterB);
-                clusters.remove(clusterB);
+        List<Cluster> clusters = new ArrayList<>();
+        for (Cluster cluster : clusterOf) {
+            if (cluster != null) {
+                clusters.add(cluster);
             }
         }
-
         return clusters;
     }
 
-    // Calcul du couplage moyen entre deux clusters
-    private double calculateAverageCoupling(Cluster a, Cluster b, Map<String, Map<String, Double>> couplingMetrics) {
-        double totalCoupling = 0;
-        int count = 0;
-
-        for (String classA : a.classes) {
-            for (String classB : b.classes) {
-                // Récupérer le couplage entre classA et classB si disponible
-                Double coupling = couplingMetrics.getOrDefault(classA, new HashMap<>()).get(classB);
-                if (coupling != null) {
-                    totalCoupling += coupling;
-                    count++;
+    // Cet algorithme comme stratégie de clustering, avec le seuil CP
+    public ClusteringStrategy asStrategy(double CP) {
+        return graph -> ClusteringResult.of(graph, performClustering(graph, CP));
+    }
+
+    // Usage : HierarchicalClustering <projectPath> [CP]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: HierarchicalClustering <projectPath> [CP]");
+            return;
+        }
+        // Le dendrogramme est enregistré après la première analyse, avec le chemin du projet et une empreinte de
+        // ses fichiers .java (chemin, date de modification, taille) : il n'est réutilisé que pour le même projet
+        // inchangé, sinon le projet est réanalysé et le fichier remplacé
+        Path dendrogramFile = Paths.get("clustering.dendrogram");
+        Path projectRoot = Paths.get(args[0]);
+        if (!Files.isDirectory(projectRoot)) {
+            System.out.println("Invalid project path: " + args[0]);
+            return;
+        }
+        long fingerprint = Dendrogram.sourceFingerprint(projectRoot);
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        HierarchicalClustering clustering = new HierarchicalClustering(metrics);
+        clustering.setParallel(Runtime.getRuntime().availableProcessors() > 1);
+
+        Dendrogram dendrogram = null;
+        CouplingGraph graph = null;
+        if (Files.isRegularFile(dendrogramFile)) {
+            try {
+                dendrogram = Dendrogram.load(dendrogramFile);
+                if (!dendrogram.matches(projectRoot, fingerprint)) {
+                    System.out.println("Dendrogramme obsolète (autre projet ou sources modifiées), nouvelle analyse");
+                    dendrogram = null;
                 }
+            } catch (IOException e) {
+                System.out.println("Dendrogramme illisible ignoré : " + e.getMessage());
             }
         }
+        if (dendrogram == null) {
+            Parser parser = new Parser();
+            parser.analyzeProject(args[0], Runtime.getRuntime().availableProcessors());
+            graph = parser.getCouplingGraph();
+            dendrogram = clustering.buildDendrogram(graph).withSource(projectRoot, fingerprint);
+            dendrogram.save(dendrogramFile);
+        }
 
-        return count > 0 ? totalCoupling / count : 0;
-    }
-
-    public static void main(String[] args) {
-        // Exemple d’utilisation avec des métriques de couplage fictives
-        Parser parser = new Parser();
-        parser.analyzeProject("C:\\Users\\DELL\\eclipse-workspace\\MathOperation"); // Chemin du projet à analyser
-        Map<String, Map<String, Double>> couplingMetrics = Parser.getCouplingMetrics();
-
-        HierarchicalClustering clustering = new HierarchicalClustering();
-        double CP = 0.5; // Seuil de couplage moyen pour la fusion des clusters
-        List<Cluster> clusters = clustering.performClustering(couplingMetrics, CP);
+        double CP = args.length > 1 ? Double.parseDouble(args[1]) : 0.5; // Seuil de couplage moyen pour la fusion des clusters
+        List<Cluster> clusters = clustering.performClustering(dendrogram, CP);
 
         // Afficher les clusters finaux
         System.out.println("Clusters finaux:");
         for (Cluster cluster : clusters) {
             System.out.println(cluster);
         }
+        if (graph != null) {
+            System.out.println("Modularité : " + ClusteringResult.of(graph, clusters).getModularity());
+        }
+
+        // Nombre de modules pour d'autres seuils, sans recalcul
+        System.out.println("CP -> modules:");
+        for (int i = 0; i <= 100; i++) {
+            double threshold = i / 200.0;
+            System.out.println(String.format(Locale.ROOT, "%.3f -> %d", threshold, dendrogram.moduleCount(threshold)));
+        }
+        System.out.println(metrics);
     }
 }
@@ -0,0 +1,233 @@
+package MAIN;
+
+import java.util.Arrays;
+
+// Louvain community detection on the weighted coupling graph (Blondel et al., 2008).
+//
+// Each level moves single nodes to the neighboring community with the best modularity gain until no move
+// improves it, then collapses every community into one node of the next level (internal coupling becomes a
+// self-loop). Levels stop when nothing moves. Every pass is linear in the number of edges and only the
+// adjacency rows are touched, so no pairwise matrix is built and sparse graphs of 100k classes take seconds.
+//
+// Nodes are visited in index order and a node only leaves its community for a strictly better one, so the
+// result is deterministic. resolution > 1 gives smaller modules, < 1 larger ones.
+public class LouvainClustering implements ClusteringStrategy {
+
+    private static final int MAX_LEVELS = 32;
+    private static final int MAX_PASSES = 100; // Local moving passes per level
+    private static final double MIN_GAIN = 1e-12; // Relative to the total coupling, smaller gains are ignored
+
+    private final double resolution;
+
+    public LouvainClustering() {
+        this(1.0);
+    }
+
+    public LouvainClustering(double resolution) {
+        this.resolution = resolution;
+    }
+
+    @Override
+    public ClusteringResult cluster(CouplingGraph graph) {
+        int n = graph.size();
+        int[] communityOf = new int[n]; // Node of the current level holding each class
+        for (int node = 0; node < n; node++) {
+            communityOf[node] = node;
+        }
+
+        Level level = Level.of(graph);
+        for (int depth = 0; depth < MAX_LEVELS; depth++) {
+            int[] community = level.moveNodes(resolution);
+            if (community == null) {
+                break;
+            }
+            for (int node = 0; node < n; node++) {
+                communityOf[node] = community[communityOf[node]];
+            }
+            level = level.aggregate(community);
+        }
+        return ClusteringResult.of(graph, communityOf);
+    }
+
+    // Weighted graph of one level in CSR form; rows are not sorted and self-loops are stored once
+    private static final class Level {
+        final int n;
+        final int[] rowStart;
+        final int[] neighbors;
+        final double[] weights;
+        final double[] degree; // Sum of the row, self-loop included
+        final double twoM;
+
+        Level(int n, int[] rowStart, int[] neighbors, double[] weights) {
+            this.n = n;
+            this.rowStart = rowStart;
+            this.neighbors = neighbors;
+            this.weights = weights;
+            this.degree = new double[n];
+            double total = 0;
+            for (int node = 0; node < n; node++) {
+                for (int position = rowStart[node]; position < rowStart[node + 1]; position++) {
+                    degree[node] += weights[position];
+                }
+                total += degree[node];
+            }
+            this.twoM = total;
+        }
+
+        static Level of(CouplingGraph graph) {
+            int n = graph.size();
+            int[] rowStart = new int[n + 1];
+            int[] neighbors = new int[graph.edgeCount()];
+            double[] weights = new double[graph.edgeCount()];
+            for (int node = 0; node < n; node++) {
+                rowStart[node + 1] = graph.neighborEnd(node);
+            }
+            for (int position = 0; position < neighbors.length; position++) {
+                neighbors[position] = graph.neighbor(position);
+                weights[position] = graph.weightAt(position);
+            }
+            return new Level(n, rowStart, neighbors, weights);
+        }
+
+        // Local moving phase. Returns the dense community of each node (numbered by first node),
+        // or null when no node changed community.
+        int[] moveNodes(double resolution) {
+            int[] community = new int[n];
+            double[] total = Arrays.copyOf(degree, n); // Sum of the degrees of each community
+            for (int node = 0; node < n; node++) {
+                community[node] = node;
+            }
+            if (twoM == 0) {
+                return null;
+            }
+
+            double[] linkWeight = new double[n]; // Coupling between the current node and each community
+            int[] linked = new int[n];
+            boolean[] isLinked = new boolean[n];
+            double minGain = MIN_GAIN * twoM;
+            boolean moved = false;
+
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                boolean changed = false;
+                for (int node = 0; node < n; node++) {
+                    int linkedCount = 0;
+                    for (int position = rowStart[node]; position < rowStart[node + 1]; position++) {
+                        int neighbor = neighbors[position];
+                        if (neighbor == node) {
+                            continue;
+                        }
+                        int c = community[neighbor];
+                        if (!isLinked[c]) {
+                            isLinked[c] = true;
+                            linked[linkedCount++] = c;
+                        }
+                        linkWeight[c] += weights[position];
+                    }
+
+                    // Gain of joining c, up to a constant factor: w(node, c) - resolution * tot(c) * k(node) / 2m
+                    int current = community[node];
+                    double k = degree[node];
+                    total[current] -= k;
+                    int best = current;
+                    double bestGain = linkWeight[current] - resolution * total[current] * k / twoM;
+                    for (int i = 0; i < linkedCount; i++) {
+                        int c = linked[i];
+                        double gain = linkWeight[c] - resolution * total[c] * k / twoM;
+                        if (gain > bestGain + minGain) {
+                            best = c;
+                            bestGain = gain;
+                        }
+                    }
+                    total[best] += k;
+                    if (best != current) {
+                        community[node] = best;
+                        changed = true;
+                        moved = true;
+                    }
+
+                    for (int i = 0; i < linkedCount; i++) {
+                        linkWeight[linked[i]] = 0;
+                        isLinked[linked[i]] = false;
+                    }
+                }
+                if (!changed) {
+                    break;
+                }
+            }
+            if (!moved) {
+                return null;
+            }
+
+            // Renumber the communities 0, 1, 2, ... in order of their first node
+            int[] dense = new int[n];
+            Arrays.fill(dense, -1);
+            int communities = 0;
+            for (int node = 0; node < n; node++) {
+                if (dense[community[node]] < 0) {
+                    dense[community[node]] = communities++;
+                }
+                community[node] = dense[community[node]];
+            }
+            return community;
+        }
+
+        // Next level: one node per community, edge weights summed, internal coupling as a self-loop
+        Level aggregate(int[] community) {
+            int communities = 0;
+            for (int c : community) {
+                communities = Math.max(communities, c + 1);
+            }
+
+            // Nodes grouped by community with a counting sort
+            int[] memberStart = new int[communities + 1];
+            for (int node = 0; node < n; node++) {
+                memberStart[community[node] + 1]++;
+            }
+            for (int c = 0; c < communities; c++) {
+                memberStart[c + 1] += memberStart[c];
+            }
+            int[] members = new int[n];
+            int[] next = Arrays.copyOf(memberStart, communities);
+            for (int node = 0; node < n; node++) {
+                members[next[community[node]]++] = node;
+            }
+
+            int[] newRowStart = new int[communities + 1];
+            int[] newNeighbors = new int[Math.max(16, neighbors.length / 2)];
+            double[] newWeights = new double[newNeighbors.length];
+            double[] linkWeight = new double[communities];
+            int[] linked = new int[communities];
+            boolean[] isLinked = new boolean[communities];
+            int size = 0;
+            for (int c = 0; c < communities; c++) {
+                int linkedCount = 0;
+                for (int i = memberStart[c]; i < memberStart[c + 1]; i++) {
+                    int node = members[i];
+                    for (int position = rowStart[node]; position < rowStart[node + 1]; position++) {
+                        int d = community[neighbors[position]];
+                        if (!isLinked[d]) {
+                            isLinked[d] = true;
+                            linked[linkedCount++] = d;
+                        }
+                        linkWeight[d] += weights[position];
+                    }
+                }
+                if (size + linkedCount > newNeighbors.length) {
+                    int capacity = Math.max(size + linkedCount, newNeighbors.length * 2);
+                    newNeighbors = Arrays.copyOf(newNeighbors, capacity);
+                    newWeights = Arrays.copyOf(newWeights, capacity);
+                }
+                for (int i = 0; i < linkedCount; i++) {
+                    int d = linked[i];
+                    newNeighbors[size] = d;
+                    newWeights[size] = linkWeight[d];
+                    size++;
+                    linkWeight[d] = 0;
+                    isLinked[d] = false;
+                }
+                newRowStart[c + 1] = size;
+            }
+            return new Level(communities, newRowStart, Arrays.copyOf(newNeighbors, size), Arrays.copyOf(newWeights, size));
+        }
+    }
+}
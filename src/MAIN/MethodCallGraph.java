@@ -0,0 +1,208 @@
+package MAIN;
+
+import java.util.*;
+
+// Immutable method-to-method call graph in CSR form, with the reverse (callers) adjacency next to it.
+// Method i is names[i] = "Class#method" (sorted, so the methods of a class are a contiguous range); overloads
+// share one node since the analysis only keeps method names. The callees of i are
+// callees[outStart[i] .. outStart[i + 1]) sorted by index with their invocation counts in callCounts[],
+// the callers of i are callers[inStart[i] .. inStart[i + 1]) sorted by index.
+public class MethodCallGraph {
+
+    public static final char SEPARATOR = '#';
+
+    private final String[] names;
+    private final int[] outStart;
+    private final int[] callees;
+    private final int[] callCounts;
+    private final int[] inStart;
+    private final int[] callers;
+
+    private MethodCallGraph(String[] names, int[] outStart, int[] callees, int[] callCounts, int[] inStart, int[] callers) {
+        this.names = names;
+        this.outStart = outStart;
+        this.callees = callees;
+        this.callCounts = callCounts;
+        this.inStart = inStart;
+        this.callers = callers;
+    }
+
+    // Name of the node of a method
+    public static String methodName(String className, String methodName) {
+        return className + SEPARATOR + methodName;
+    }
+
+    // Every declared method of the store is a node, even when it neither calls nor is called
+    static MethodCallGraph fromStore(CouplingStore store) {
+        // Snapshot the edges; methods that only appear in removed calls are not nodes
+        SymbolTable symbols = store.getMethodSymbols();
+        EdgeCountMap calls = new EdgeCountMap();
+        store.forEachMethodCall(calls::add);
+        boolean[] used = new boolean[symbols.size()];
+        calls.forEach((caller, callee, invocations) -> {
+            used[caller] = true;
+            used[callee] = true;
+        });
+
+        Set<String> allNames = new TreeSet<>();
+        for (int id = 0; id < used.length; id++) {
+            if (used[id]) {
+                allNames.add(symbols.nameOf(id));
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : store.getClassMethodsMap().entrySet()) {
+            for (String method : entry.getValue()) {
+                allNames.add(methodName(entry.getKey(), method));
+            }
+        }
+        String[] names = allNames.toArray(new String[0]);
+        int[] nodeOf = new int[used.length];
+        for (int id = 0; id < used.length; id++) {
+            nodeOf[id] = used[id] ? Arrays.binarySearch(names, symbols.nameOf(id)) : -1;
+        }
+
+        // Place the edges with two counting sorts (by callee, then stable by caller),
+        // which leaves every row sorted without any comparison sort
+        int edges = calls.size();
+        int[] from = new int[edges];
+        int[] to = new int[edges];
+        int[] count = new int[edges];
+        int[] size = new int[1];
+        calls.forEach((caller, callee, invocations) -> {
+            from[size[0]] = nodeOf[caller];
+            to[size[0]] = nodeOf[callee];
+            count[size[0]] = (int) Math.min(invocations, Integer.MAX_VALUE);
+            size[0]++;
+        });
+
+        int[] inStart = rowStarts(to, edges, names.length);
+        int[] byCallee = new int[edges];
+        int[] next = Arrays.copyOf(inStart, names.length);
+        for (int i = 0; i < edges; i++) {
+            byCallee[next[to[i]]++] = i;
+        }
+
+        int[] outStart = rowStarts(from, edges, names.length);
+        int[] callees = new int[edges];
+        int[] callCounts = new int[edges];
+        next = Arrays.copyOf(outStart, names.length);
+        for (int edge : byCallee) {
+            int position = next[from[edge]]++;
+            callees[position] = to[edge];
+            callCounts[position] = count[edge];
+        }
+
+        // Reverse adjacency from the forward rows, visited in caller order so that each row comes out sorted
+        int[] callers = new int[edges];
+        next = Arrays.copyOf(inStart, names.length);
+        for (int caller = 0; caller < names.length; caller++) {
+            for (int position = outStart[caller]; position < outStart[caller + 1]; position++) {
+                callers[next[callees[position]]++] = caller;
+            }
+        }
+        return new MethodCallGraph(names, outStart, callees, callCounts, inStart, callers);
+    }
+
+    private static int[] rowStarts(int[] rows, int edges, int nodes) {
+        int[] start = new int[nodes + 1];
+        for (int i = 0; i < edges; i++) {
+            start[rows[i] + 1]++;
+        }
+        for (int node = 0; node < nodes; node++) {
+            start[node + 1] += start[node];
+        }
+        return start;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int edgeCount() {
+        return callees.length;
+    }
+
+    public String name(int method) {
+        return names[method];
+    }
+
+    // Node of "Class#method", or -1 if the method is unknown
+    public int indexOf(String name) {
+        int method = Arrays.binarySearch(names, name);
+        return method >= 0 ? method : -1;
+    }
+
+    public int indexOf(String className, String methodName) {
+        return indexOf(methodName(className, methodName));
+    }
+
+    // Nodes of all the methods of a class
+    public int[] methodsOf(String className) {
+        String prefix = className + SEPARATOR;
+        int first = Arrays.binarySearch(names, prefix);
+        first = first >= 0 ? first : -first - 1;
+        int last = first;
+        while (last < names.length && names[last].startsWith(prefix)) {
+            last++;
+        }
+        int[] methods = new int[last - first];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = first + i;
+        }
+        return methods;
+    }
+
+    // Number of distinct methods called by a method
+    public int fanOut(int method) {
+        return outStart[method + 1] - outStart[method];
+    }
+
+    // Number of distinct methods calling a method
+    public int fanIn(int method) {
+        return inStart[method + 1] - inStart[method];
+    }
+
+    public int[] calleesOf(int method) {
+        return Arrays.copyOfRange(callees, outStart[method], outStart[method + 1]);
+    }
+
+    public int[] callersOf(int method) {
+        return Arrays.copyOfRange(callers, inStart[method], inStart[method + 1]);
+    }
+
+    // Number of invocations of callee found in caller, 0 when it does not call it
+    public int callCount(int caller, int callee) {
+        int position = Arrays.binarySearch(callees, outStart[caller], outStart[caller + 1], callee);
+        return position >= 0 ? callCounts[position] : 0;
+    }
+
+    // Methods transitively called from a method (the method itself is included only through a cycle)
+    public BitSet reachableFrom(int method) {
+        return traverse(method, outStart, callees);
+    }
+
+    // Methods that transitively call a method, i.e. what may be affected when it changes
+    public BitSet reachingTo(int method) {
+        return traverse(method, inStart, callers);
+    }
+
+    // Breadth-first search over one of the two adjacencies with an array queue
+    private BitSet traverse(int method, int[] start, int[] adjacent) {
+        BitSet visited = new BitSet(names.length);
+        int[] queue = new int[names.length + 1]; // The start method may come back once through a cycle
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = method;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int position = start[current]; position < start[current + 1]; position++) {
+                int next = adjacent[position];
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return visited;
+    }
+}
@@ -1,27 +1,77 @@
 package MAIN;
 
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class Parser {
 	
 	
 
-    // Maps to store classes, their methods, and method invocation relationships
-   static private Map<String, Set<String>> classMethodsMap = new HashMap<>();
-   static private Map<String, Integer> totalCouplingCount = new HashMap<>(); // Total invocations between any classes
-    static private Map<String, Integer> classPairCouplingCount = new HashMap<>(); // Specific invocations between class pairs
-    static private Set<String> userDefinedClasses = new HashSet<>(); // To store user-defined class names
+    // Classes, their methods, and method invocation relationships found by this parser
+    private final CouplingStore store;
+    private final AnalysisMetrics metrics = new AnalysisMetrics();
+    private boolean prefilter = true; // Declarations-only parse for files without qualified invocations
+    private boolean recordMethodCalls = false; // Method-to-method calls, for getMethodCallGraph()
 
-    private String currentClass = null;
-    private String currentMethod = null;
+    private static final int QUEUE_FACTOR = 4; // Pending files per worker in parallel mode
 
-    // Visitor class to analyze each Java source file
-    private class CouplingVisitor extends ASTVisitor {
+    public Parser() {
+        this(new CouplingStore());
+    }
+
+    public Parser(CouplingStore store) {
+        this.store = store;
+    }
+
+    public CouplingStore getStore() {
+        return store;
+    }
+
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Enable or disable the source pre-filter used by analyzeProject (enabled by default)
+    public void setPrefilter(boolean prefilter) {
+        this.prefilter = prefilter;
+    }
+
+    // Also record which method calls which (disabled by default). Each coupled invocation then builds two
+    // "Class#method" names, so batch runs that only need class couplings leave it off; the daemon turns it on.
+    // Cached analyses keep what the run that produced them recorded.
+    public void setRecordMethodCalls(boolean recordMethodCalls) {
+        this.recordMethodCalls = recordMethodCalls;
+    }
+
+    // Visitor class to analyze each Java source file, results are collected into a per-file FileAnalysis
+    private static class CouplingVisitor extends ASTVisitor {
+
+        private final FileAnalysis result;
+        private final boolean resolveBindings; // Use the JDT bindings instead of guessing the class from the expression
+        private final boolean recordMethodCalls;
+        private String currentClass = null;
+        private String currentMethod = null;
+
+        CouplingVisitor(FileAnalysis result, boolean resolveBindings, boolean recordMethodCalls) {
+            this.result = result;
+            this.resolveBindings = resolveBindings;
+            this.recordMethodCalls = recordMethodCalls;
+        }
 
     	@Override
     	public boolean visit(TypeDeclaration node) {
@@ -34,11 +84,13 @@ public class Parser {
     	    }
 
     	    // Initialize methods map for current class
-    	    classMethodsMap.putIfAbsent(currentClass, new HashSet<>());
-    	    userDefinedClasses.add(currentClass);
+    	    result.classMethodsMap.putIfAbsent(currentClass, new HashSet<>());
+    	    result.userDefinedClasses.add(currentClass);
 
     	    // Debug: Print user-defined class
-    	    System.out.println("Class Detected: " + currentClass);
+    	    if (AnalysisMetrics.TRACE) {
+    	        System.out.println("Class Detected: " + currentClass);
+    	    }
     	    return super.visit(node);
     	}
 
@@ -52,11 +104,11 @@ public class Parser {
         public boolean visit(MethodDeclaration node) {
             if (currentClass != null) {
                 // Ensure that the Set for the current class is initialized before adding methods to it
-                Set<String> methodsSet = classMethodsMap.get(currentClass);
+                Set<String> methodsSet = result.classMethodsMap.get(currentClass);
                 if (methodsSet == null) {
                     // Initialize if the class's method set is not initialized yet
                     methodsSet = new HashSet<>();
-                    classMethodsMap.put(currentClass, methodsSet);
+                    result.classMethodsMap.put(currentClass, methodsSet);
                 }
 
                 // Add the method to the set
@@ -77,11 +129,21 @@ public class Parser {
             if (currentClass != null && currentMethod != null) {
                 String calledMethod = node.getName().getIdentifier();
                 String calledClass = null;
+                boolean calledFromSource = false;
 
                 // Check if the method invocation has an expression (i.e., it's not a static method call)
                 if (node.getExpression() != null) {
+                    // With bindings, the called class is the class declaring the invoked method
+                    if (resolveBindings) {
+                        IMethodBinding binding = node.resolveMethodBinding();
+                        if (binding != null && binding.getDeclaringClass() != null) {
+                            ITypeBinding declaringClass = binding.getDeclaringClass().getErasure();
+                            calledClass = declaringClass.getName();
+                            calledFromSource = declaringClass.isFromSource();
+                        }
+                    }
                     // If the expression is a simple name, it could be a field or method from another class
-                    if (node.getExpression() instanceof SimpleName) {
+                    else if (node.getExpression() instanceof SimpleName) {
                         calledClass = ((SimpleName) node.getExpression()).getIdentifier();
                     }
                     // If the expression is a method invocation, we check its fully qualified name
@@ -100,18 +162,27 @@ public class Parser {
 
                 // If calledClass is null or empty, skip this method invocation
                 if (calledClass == null || calledClass.trim().isEmpty()) {
-                    System.out.println("Skipping invocation with no valid class: " + node.toString());
+                    result.invocationsSkipped++;
+                    if (AnalysisMetrics.TRACE) {
+                        System.out.println("Skipping invocation with no valid class: " + node.toString());
+                    }
                     return super.visit(node);
                 }
 
-                // Now check if the called class is a user-defined class
-                if (isUserDefinedClass(calledClass)) {
-                    System.out.println("User-Defined Class Coupling: " + currentClass + " -> " + calledClass);
-                    totalCouplingCount.merge("TOTAL", 1, Integer::sum);
-                    String relationKey = currentClass + " -> " + calledClass;
-                    classPairCouplingCount.merge(relationKey, 1, Integer::sum);
+                // Now check if the called class is a user-defined class (declared in the analyzed sources with bindings)
+                if (resolveBindings ? calledFromSource : isUserDefinedClass(calledClass)) {
+                    if (AnalysisMetrics.TRACE) {
+                        System.out.println("User-Defined Class Coupling: " + currentClass + " -> " + calledClass);
+                    }
+                    result.recordCoupling(currentClass, calledClass);
+                    if (recordMethodCalls) {
+                        result.recordMethodCall(currentClass, currentMethod, calledClass, calledMethod);
+                    }
                 } else {
-                    System.out.println("Skipping non-user-defined class interaction: " + currentClass + " -> " + calledClass);
+                    result.invocationsNotUserDefined++;
+                    if (AnalysisMetrics.TRACE) {
+                        System.out.println("Skipping non-user-defined class interaction: " + currentClass + " -> " + calledClass);
+                    }
                 }
             }
             return super.visit(node);
@@ -154,17 +225,234 @@ public class Parser {
 
     // Method to analyze all Java files in a project directory
     public void analyzeProject(String projectPath) {
+        analyzeProject(projectPath, 1);
+    }
+
+    // Same as above, parsing the files on a pool of worker threads when threads > 1
+    public void analyzeProject(String projectPath, int threads) {
+        analyzeProject(projectPath, threads, null);
+    }
+
+    // Same as above, re-using the results cached in cacheFile for unchanged files (null disables the cache).
+    // The cache file is rewritten at the end with the results of this run.
+    // Files are handed to the workers while the directory tree is walked, no list of the whole tree is built.
+    public void analyzeProject(String projectPath, int threads, Path cacheFile) {
         File projectDir = new File(projectPath);
 
         if (projectDir.exists() && projectDir.isDirectory()) {
-            List<File> javaFiles = getJavaFiles(projectDir);
+            analyzePaths(Collections.singletonList(projectDir.toPath()), threads, cacheFile);
+
+            // Print detected user-defined classes
+            printUserDefinedClasses();
+
+            // Print the coupling metrics
+            printCouplingMetrics();
+            System.out.println(metrics);
+        } else {
+            System.out.println("Invalid project path: " + projectPath);
+        }
+    }
+
+    // Analyze project directories and/or single .java files (e.g. the files of a diff) into the store,
+    // without printing the results. Paths that are neither are ignored.
+    // Cache hits and misses are counted in the metrics (filesFromCache, filesCacheMissed).
+    public void analyzePaths(List<Path> paths, int threads, Path cacheFile) {
+        CouplingCache cache = cacheFile != null ? CouplingCache.load(cacheFile) : null;
+
+        if (threads <= 1) {
+            walkJavaFiles(paths, (file, attributes) -> analyzeAndMerge(file, attributes, cache, this::mergeFileAnalysis));
+        } else {
+            analyzeFilesInParallel(paths, threads, cache, this::mergeFileAnalysis);
+        }
+
+        if (cache != null) {
+            try {
+                cache.save(cacheFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Parse every Java file of a project and hand each result to sink instead of the store of this parser.
+    // With threads > 1 the sink is called concurrently from the workers. Nothing is printed or kept.
+    // An exception thrown by the sink ends the analysis and is rethrown to the caller, in both modes.
+    public void forEachFileAnalysis(String projectPath, int threads, Consumer<FileAnalysis> sink) {
+        Path root = Paths.get(projectPath);
+        if (!Files.isDirectory(root)) {
+            System.out.println("Invalid project path: " + projectPath);
+            return;
+        }
+        if (threads <= 1) {
+            walkJavaFiles(Collections.singletonList(root), (file, attributes) -> analyzeAndMerge(file, attributes, null, sink));
+        } else {
+            analyzeFilesInParallel(Collections.singletonList(root), threads, null, sink);
+        }
+    }
 
-            for (File file : javaFiles) {
+    // Called for every .java file found by walkJavaFiles, with the attributes read during the walk
+    private interface JavaFileConsumer {
+        void accept(Path file, BasicFileAttributes attributes);
+    }
+
+    // Walk the directory trees and pass each Java file on as soon as it is found; a root can also be a single file
+    private void walkJavaFiles(List<Path> roots, JavaFileConsumer consumer) {
+        for (Path root : roots) {
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                            consumer.accept(file, attributes);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        e.printStackTrace();
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Read and parse the files on a fixed pool of workers.
+    // The work queue is bounded: when it is full the walking thread parses the next file itself,
+    // so at most (threads * QUEUE_FACTOR) files are waiting at any time.
+    // An exception thrown by the sink stops the remaining files and is rethrown here once the workers are done,
+    // as it would be in sequential mode.
+    private void analyzeFilesInParallel(List<Path> roots, int threads, CouplingCache cache, Consumer<FileAnalysis> sink) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_FACTOR), new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicReference<RuntimeException> sinkFailure = new AtomicReference<>();
+        try {
+            walkJavaFiles(roots, (file, attributes) -> executor.execute(() -> {
+                if (sinkFailure.get() != null) {
+                    return;
+                }
                 try {
-                    String sourceCode = Files.readString(file.toPath());
-                    analyzeClassSource(sourceCode);
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    analyzeAndMerge(file, attributes, cache, sink);
+                } catch (RuntimeException e) {
+                    sinkFailure.compareAndSet(null, e);
+                }
+            }));
+        } finally {
+            executor.shutdown();
+        }
+
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (sinkFailure.get() != null) {
+            throw sinkFailure.get();
+        }
+    }
+
+    // A file that cannot be read or parsed (including a JDT crash) is reported and counted in the metrics, in
+    // both modes: in a worker an exception would otherwise vanish inside the executor
+    private void analyzeAndMerge(Path file, BasicFileAttributes attributes, CouplingCache cache, Consumer<FileAnalysis> sink) {
+        FileAnalysis analysis;
+        try {
+            analysis = analyzeFile(file, attributes, cache);
+        } catch (IOException | RuntimeException e) {
+            metrics.recordFailedFile();
+            System.err.println("Failed to analyze " + file);
+            e.printStackTrace();
+            return;
+        }
+        sink.accept(analysis);
+    }
+
+    // Read and parse a single file without touching the shared maps.
+    // The content goes through the buffers of the current thread (see SourceBuffer), so nothing is allocated
+    // per file for the bytes or the characters.
+    // With a cache, unchanged files are not parsed again (and not even read when their mtime did not move).
+    private FileAnalysis analyzeFile(Path file, BasicFileAttributes attributes, CouplingCache cache) throws IOException {
+        if (cache == null) {
+            return parseFile(file);
+        }
+        SourceBuffer buffer = SourceBuffer.get();
+
+        Path path = file.toAbsolutePath().normalize();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        FileAnalysis cached = cache.lookup(path, lastModified, size);
+        if (cached != null) {
+            metrics.recordCachedFile();
+            return cached;
+        }
+
+        ByteBuffer content = buffer.read(path);
+        long hash = CouplingCache.hash(content);
+        cached = cache.lookup(path, lastModified, content.remaining(), hash);
+        if (cached != null) {
+            metrics.recordCachedFile();
+            return cached;
+        }
+
+        FileAnalysis analysis = parseFileContent(buffer, content);
+        cache.put(path, lastModified, content.remaining(), hash, analysis);
+        metrics.recordCacheMiss();
+        return analysis;
+    }
+
+    // Read and parse one file into its own FileAnalysis without adding it to the store (safe from any thread)
+    public FileAnalysis parseFile(Path file) throws IOException {
+        SourceBuffer buffer = SourceBuffer.get();
+        return parseFileContent(buffer, buffer.read(file));
+    }
+
+    // Add the results of one file to the project-wide store (no lock needed, the store is concurrent)
+    private void mergeFileAnalysis(FileAnalysis analysis) {
+        store.add(analysis);
+    }
+
+    // Analyze all Java files of a project in batch mode with binding resolution.
+    // All files go through ASTParser.createASTs, so a single parser environment (name lookup and binding caches)
+    // is shared by every file of a batch, and couplings are attributed to the class that really declares the
+    // invoked method instead of being guessed from the variable name.
+    // classpath: jars/folders of the libraries used by the project; sourcepath: source roots (null = guessed).
+    // With threads > 1 the files are split into one batch per worker, each with its own environment.
+    public void analyzeProjectWithBindings(String projectPath, String[] classpath, String[] sourcepath, int threads) {
+        File projectDir = new File(projectPath);
+
+        if (projectDir.exists() && projectDir.isDirectory()) {
+            List<File> javaFiles = getJavaFiles(projectDir);
+            String[] sourceRoots = sourcepath != null ? sourcepath : guessSourceRoots(projectDir);
+            String[] libraries = classpath != null ? classpath : new String[0];
+
+            int batches = Math.max(1, Math.min(threads, javaFiles.size()));
+            if (batches == 1) {
+                parseBatch(javaFiles, libraries, sourceRoots);
+            } else {
+                ExecutorService executor = Executors.newFixedThreadPool(batches);
+                List<Future<?>> futures = new ArrayList<>();
+                int batchSize = (javaFiles.size() + batches - 1) / batches;
+                for (int start = 0; start < javaFiles.size(); start += batchSize) {
+                    List<File> batch = javaFiles.subList(start, Math.min(javaFiles.size(), start + batchSize));
+                    futures.add(executor.submit(() -> parseBatch(batch, libraries, sourceRoots)));
+                }
+                try {
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // parseBatch counts its own failures, only an Error gets here: the results would be incomplete
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new IllegalStateException("Batch analysis failed", e.getCause());
+                } finally {
+                    executor.shutdownNow();
                 }
             }
 
@@ -173,11 +461,84 @@ public class Parser {
 
             // Print the coupling metrics
             printCouplingMetrics();
+            System.out.println(metrics);
         } else {
             System.out.println("Invalid project path: " + projectPath);
         }
     }
 
+    // Parse a batch of files with one shared environment, each AST is visited and dropped as soon as it is delivered.
+    // A unit whose analysis throws is reported and counted as failed like in analyzeAndMerge; when the JDT batch
+    // itself throws, the files it had not delivered yet are counted as failed.
+    private void parseBatch(List<File> files, String[] classpath, String[] sourcepath) {
+        String[] paths = new String[files.size()];
+        String[] encodings = new String[files.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = files.get(i).getAbsolutePath();
+            encodings[i] = StandardCharsets.UTF_8.name();
+        }
+        String[] sourceEncodings = new String[sourcepath.length];
+        Arrays.fill(sourceEncodings, StandardCharsets.UTF_8.name());
+
+        ASTParser parser = ASTParser.newParser(AST.JLS4);
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(true);
+        parser.setBindingsRecovery(true);
+        parser.setEnvironment(classpath, sourcepath, sourceEncodings, true);
+        @SuppressWarnings("unchecked") // JDT 3.9 returns a raw Hashtable
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.VERSION_1_7, options);
+        parser.setCompilerOptions(options);
+
+        long[] lastAst = { System.nanoTime() };
+        int[] delivered = { 0 };
+        try {
+            parser.createASTs(paths, encodings, new String[0], new FileASTRequestor() {
+                @Override
+                public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+                    delivered[0]++;
+                    FileAnalysis analysis;
+                    try {
+                        analysis = analyzeCompilationUnit(ast, true);
+                    } catch (RuntimeException e) {
+                        metrics.recordFailedFile();
+                        System.err.println("Failed to analyze " + sourceFilePath);
+                        e.printStackTrace();
+                        return;
+                    }
+                    mergeFileAnalysis(analysis);
+
+                    // The batch parses lazily, the time between two delivered units is the cost of one file
+                    long now = System.nanoTime();
+                    metrics.recordFile(analysis, now - lastAst[0]);
+                    lastAst[0] = now;
+                }
+            }, null);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to analyze " + (paths.length - delivered[0]) + " files of a batch starting with " + paths[0]);
+            e.printStackTrace();
+            for (int i = delivered[0]; i < paths.length; i++) {
+                metrics.recordFailedFile();
+            }
+        }
+    }
+
+    // Source roots for the parser environment: the usual Maven/Eclipse layouts if present, else the project itself
+    private String[] guessSourceRoots(File projectDir) {
+        List<String> roots = new ArrayList<>();
+        if (new File(projectDir, "src/main/java").isDirectory()) {
+            roots.add(new File(projectDir, "src/main/java").getAbsolutePath());
+            if (new File(projectDir, "src/test/java").isDirectory()) {
+                roots.add(new File(projectDir, "src/test/java").getAbsolutePath());
+            }
+        } else if (new File(projectDir, "src").isDirectory()) {
+            roots.add(new File(projectDir, "src").getAbsolutePath());
+        } else {
+            roots.add(projectDir.getAbsolutePath());
+        }
+        return roots.toArray(new String[0]);
+    }
+
     // Recursively get all Java files in a directory
     private List<File> getJavaFiles(File directory) {
         List<File> javaFiles = new ArrayList<>();
@@ -198,73 +559,130 @@ public class Parser {
 
     // Parse and analyze a single class's source code
     public void analyzeClassSource(String sourceCode) {
+        mergeFileAnalysis(parseClassSource(sourceCode));
+    }
+
+    // Parse a single class's source code into its own FileAnalysis (safe to call from any thread)
+    public FileAnalysis parseClassSource(String sourceCode) {
+        long start = System.nanoTime();
+        FileAnalysis analysis = analyzeCompilationUnit(parseCompilationUnit(sourceCode));
+        metrics.recordFile(analysis, System.nanoTime() - start);
+        return analysis;
+    }
+
+    // Parse the raw (UTF-8) content of a file loaded in buffer. When the pre-filter shows that the file cannot
+    // contain any coupling, only its declarations are parsed (method bodies ignored), which gives the same
+    // classes and methods.
+    private FileAnalysis parseFileContent(SourceBuffer buffer, ByteBuffer content) throws IOException {
+        long start = System.nanoTime();
+        boolean fullParse = !prefilter || SourcePrefilter.needsFullParse(content);
+        long scanned = System.nanoTime();
+        FileAnalysis analysis = analyzeCompilationUnit(parseCompilationUnit(buffer.chars(), !fullParse));
+        long end = System.nanoTime();
+
+        if (!prefilter) {
+            metrics.recordFile(analysis, end - start);
+            return analysis;
+        }
+        metrics.recordPrefilter(scanned - start);
+        if (fullParse) {
+            metrics.recordFile(analysis, end - scanned);
+        } else {
+            metrics.recordDeclarationsOnlyFile(analysis, end - scanned);
+        }
+        return analysis;
+    }
+
+    // Build the AST of a single class's source code
+    public CompilationUnit parseCompilationUnit(String sourceCode) {
+        return parseCompilationUnit(sourceCode, false);
+    }
+
+    // Same as above; with declarationsOnly the method bodies are skipped and statements are not recovered
+    public CompilationUnit parseCompilationUnit(String sourceCode, boolean declarationsOnly) {
+        return parseCompilationUnit(sourceCode.toCharArray(), declarationsOnly);
+    }
+
+    // Same as above from a character array, which is not copied (it may end with padding whitespace)
+    public CompilationUnit parseCompilationUnit(char[] source, boolean declarationsOnly) {
         ASTParser parser = ASTParser.newParser(AST.JLS4);
-        parser.setSource(sourceCode.toCharArray());
+        parser.setSource(source);
         parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        if (declarationsOnly) {
+            parser.setIgnoreMethodBodies(true);
+            parser.setStatementsRecovery(false);
+        }
+
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    // Collect the classes, methods and couplings of an already parsed compilation unit
+    public FileAnalysis analyzeCompilationUnit(CompilationUnit cu) {
+        return analyzeCompilationUnit(cu, false);
+    }
 
-        CompilationUnit cu = (CompilationUnit) parser.createAST(null);
-        cu.accept(new CouplingVisitor());
+    // Same as above; with resolveBindings the unit must have been parsed with bindings (see analyzeProjectWithBindings)
+    public FileAnalysis analyzeCompilationUnit(CompilationUnit cu, boolean resolveBindings) {
+        FileAnalysis analysis = new FileAnalysis();
+        cu.accept(new CouplingVisitor(analysis, resolveBindings, recordMethodCalls));
+        return analysis;
     }
 
     // Calculate and print the coupling metrics for each class pair
     public void printCouplingMetrics() {
-        int totalRelations = totalCouplingCount.getOrDefault("TOTAL", 0);
+        long totalRelations = store.getTotalCouplingCount();
+        SymbolTable symbols = store.getSymbols();
 
         System.out.println("Coupling Metrics between Classes:");
         
-        if (classPairCouplingCount.isEmpty()) {
+        if (!store.hasCouplings()) {
             System.out.println("No method invocations detected between user-defined classes.");
         } else {
-            for (Map.Entry<String, Integer> entry : classPairCouplingCount.entrySet()) {
-                String classPair = entry.getKey();
-                int abRelations = entry.getValue();
-
+            store.forEachCoupling((from, to, abRelations) -> {
                 // Calculate the coupling metric
                 double couplingMetric = totalRelations == 0 ? 0 : (double) abRelations / totalRelations;
-                System.out.println("Coupling(" + classPair + ") = " + couplingMetric);
-            }
+                System.out.println("Coupling(" + symbols.nameOf(from) + " -> " + symbols.nameOf(to) + ") = " + couplingMetric);
+            });
         }
     }
 
     // Print all user-defined classes detected in the project
     public void printUserDefinedClasses() {
         System.out.println("User-Defined Classes:");
-        for (String className : userDefinedClasses) {
+        for (String className : store.getUserDefinedClasses()) {
             System.out.println(className);
         }
     }
     
     
-    static public Map<String, Map<String, Double>> getCouplingMetrics() {
-        Map<String, Map<String, Double>> couplingMetrics = new HashMap<>();
-
-        // Calculate coupling metrics based on classPairCouplingCount
-        for (Map.Entry<String, Integer> entry : classPairCouplingCount.entrySet()) {
-            String[] classes = entry.getKey().split(" -> ");
-            String class1 = classes[0];
-            String class2 = classes[1];
-
-            // Calculate the coupling metric for each pair of classes
-            double couplingMetric = (double) entry.getValue() / totalCouplingCount.getOrDefault("TOTAL", 1); // Avoid division by zero
-
-            // Add the coupling metric to the map
-            couplingMetrics
-                .computeIfAbsent(class1, k -> new HashMap<>())
-                .put(class2, couplingMetric);
-            couplingMetrics
-                .computeIfAbsent(class2, k -> new HashMap<>())
-                .put(class1, couplingMetric); // Since coupling is bidirectional
-        }
+    // Coupling metrics as an array-based graph, symmetric since coupling is bidirectional
+    public CouplingGraph getCouplingGraph() {
+        return store.toGraph();
+    }
 
-        return couplingMetrics;
+    // Method-to-method calls between user-defined classes, with fan-in/fan-out and reachability queries
+    // (no call edges unless setRecordMethodCalls(true) was set before the analysis)
+    public MethodCallGraph getMethodCallGraph() {
+        return store.toMethodCallGraph();
+    }
+
+    // Same metrics as a nested map (class -> coupled class -> metric)
+    public Map<String, Map<String, Double>> getCouplingMetrics() {
+        return getCouplingGraph().toMetricsMap();
     }
-   
 
 
-    // Main method for running the analysis on a given project path
+
+    // Main method for running the analysis on a given project path (see AnalyzerMain for the full command line)
     public static void main(String[] args) {
-        String projectPath = "C:\\Users\\DELL\\eclipse-workspace\\MathOperation"; // Change to your project path
+        if (args.length < 1) {
+            System.out.println("Usage: Parser <projectPath> [threads]");
+            return;
+        }
+        String projectPath = args[0];
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
         Parser analyzer = new Parser();
-        analyzer.analyzeProject(projectPath);
+        analyzer.getMetrics().register("Parser"); // Visible in JConsole / VisualVM while the analysis runs
+        analyzer.analyzeProject(projectPath, threads);
     }
 }
@@ -0,0 +1,138 @@
+package MAIN;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Reusable buffers used by one parser thread to load a source file.
+//
+// The bytes are read into a pooled direct buffer (or memory-mapped for large files), the pre-filter and the
+// cache hash work on those bytes, and the UTF-8 decoder writes straight into a pooled char[] that is handed to
+// ASTParser.setSource. The char[] comes from power-of-two size classes and the part after the source is kept
+// filled with spaces, which the parser reads as trailing whitespace, so no per-file String or exact-size copy
+// is needed. A buffer is only valid until the next read() on the same thread.
+// Sources that are not valid UTF-8 are rejected with a MalformedInputException, like Files.readString.
+// Sources beyond the largest size class (2^30 chars) are decoded into an unpooled array of their exact size.
+final class SourceBuffer {
+
+    private static final int INITIAL_BYTES = 64 * 1024;
+    private static final int MAP_THRESHOLD = 4 * 1024 * 1024; // Files above this size are memory-mapped
+    private static final int MIN_CHAR_CLASS = 10; // Smallest pooled char[] holds 1024 chars
+    private static final int MAX_CHAR_CLASS = 30; // Largest pooled char[] holds 2^30 chars
+
+    private static final ThreadLocal<SourceBuffer> BUFFERS = ThreadLocal.withInitial(SourceBuffer::new);
+
+    private ByteBuffer pooledBytes = ByteBuffer.allocateDirect(INITIAL_BYTES);
+    private final char[][] charPool = new char[MAX_CHAR_CLASS + 1][];
+    private final int[] usedLength = new int[MAX_CHAR_CLASS + 1]; // Characters written in each pooled array by the previous file
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    private ByteBuffer bytes;
+    private char[] chars;
+    private int charLength;
+
+    static SourceBuffer get() {
+        return BUFFERS.get();
+    }
+
+    // Load the content of a file, returned as a read-only view from position 0 to its size
+    ByteBuffer read(Path file) throws IOException {
+        chars = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be parsed (" + size + " bytes)");
+            }
+            if (size > MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return bytes.duplicate();
+            }
+            if (size > pooledBytes.capacity()) {
+                pooledBytes = ByteBuffer.allocateDirect(Integer.highestOneBit((int) size - 1) << 1);
+            }
+            pooledBytes.clear();
+            pooledBytes.limit((int) size);
+            while (pooledBytes.hasRemaining() && channel.read(pooledBytes) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            pooledBytes.flip();
+            bytes = pooledBytes;
+            return bytes.asReadOnlyBuffer();
+        }
+    }
+
+    // Decode the bytes of the last read() into a pooled char[]; characters after length() are spaces
+    char[] chars() throws IOException {
+        if (chars != null) {
+            return chars;
+        }
+        ByteBuffer in = bytes.duplicate();
+        int length = in.remaining(); // UTF-8 never yields more chars than bytes
+        if (length > 1 << MAX_CHAR_CLASS) {
+            char[] target = new char[length];
+            charLength = decode(in, target);
+            Arrays.fill(target, charLength, length, ' ');
+            chars = target;
+            return chars;
+        }
+
+        int sizeClass = sizeClass(length);
+        char[] target = charPool[sizeClass];
+        if (target == null) {
+            target = new char[1 << sizeClass];
+            Arrays.fill(target, ' ');
+            charPool[sizeClass] = target;
+        }
+        try {
+            charLength = decode(in, target);
+        } catch (IOException e) {
+            usedLength[sizeClass] = target.length; // Partly overwritten, blank it all on the next use
+            throw e;
+        }
+
+        // Blank what the previous, longer file left behind
+        if (usedLength[sizeClass] > charLength) {
+            Arrays.fill(target, charLength, usedLength[sizeClass], ' ');
+        }
+        usedLength[sizeClass] = charLength;
+        chars = target;
+        return chars;
+    }
+
+    // Number of decoded characters in chars()
+    int length() throws IOException {
+        chars();
+        return charLength;
+    }
+
+    // Decode in into target from position 0 and return the number of chars written
+    private int decode(ByteBuffer in, char[] target) throws IOException {
+        CharBuffer out = CharBuffer.wrap(target);
+        decoder.reset();
+        CoderResult result = decoder.decode(in, out, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        decoder.flush(out);
+        return out.position();
+    }
+
+    // Smallest size class holding length chars, length <= 2^MAX_CHAR_CLASS
+    private static int sizeClass(int length) {
+        int sizeClass = MIN_CHAR_CLASS;
+        while ((1 << sizeClass) < length) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+}
@@ -0,0 +1,134 @@
+package MAIN;
+
+import java.nio.ByteBuffer;
+
+// Cheap scan of the raw bytes of a Java file, run before the parser.
+//
+// The visitor only counts invocations with an expression (a.m(), a.b.m(), f().m(), a.<T>m()), and each of them
+// has a '.' followed by an identifier (or type arguments) and a '('. A file without that pattern outside
+// comments and literals cannot add any coupling, so only its declarations are needed: it can be parsed with
+// the method bodies ignored, unless a body may itself declare classes or methods (anonymous or local classes),
+// which is ruled out by the absence of 'new' and of a second class/interface/enum keyword.
+// The scan is conservative: anything it does not understand (unicode escapes, comments after '.') counts as a hit.
+public final class SourcePrefilter {
+
+    private SourcePrefilter() {
+    }
+
+    // True when the file must go through a full parse, false when a declarations-only parse gives the same result
+    public static boolean needsFullParse(byte[] source, int length) {
+        return needsFullParse(ByteBuffer.wrap(source, 0, length));
+    }
+
+    // Same scan over the bytes between 0 and the limit of a (possibly direct or memory-mapped) buffer
+    public static boolean needsFullParse(ByteBuffer source) {
+        int length = source.limit();
+        int typeKeywords = 0;
+        int i = 0;
+        while (i < length) {
+            byte c = source.get(i);
+            if (c == '/' && i + 1 < length && source.get(i + 1) == '/') {
+                i = skipLineComment(source, length, i + 2);
+            } else if (c == '/' && i + 1 < length && source.get(i + 1) == '*') {
+                i = skipBlockComment(source, length, i + 2);
+            } else if (c == '"' || c == '\'') {
+                i = skipLiteral(source, length, i + 1, c);
+            } else if (c == '\\') {
+                return true; // Unicode escape outside a literal, could hide anything
+            } else if (c == '.') {
+                if (isInvocationAfterDot(source, length, i + 1)) {
+                    return true;
+                }
+                i++;
+                // Skip the member name so that "x.class" or "x.new" are not read as keywords
+                while (i < length && isIdentifierPart(source.get(i))) {
+                    i++;
+                }
+            } else if (isIdentifierStart(c)) {
+                int start = i;
+                while (i < length && isIdentifierPart(source.get(i))) {
+                    i++;
+                }
+                if (isWord(source, start, i, "new")) {
+                    return true;
+                }
+                if (isWord(source, start, i, "class") || isWord(source, start, i, "interface") || isWord(source, start, i, "enum")) {
+                    if (++typeKeywords > 1) {
+                        return true;
+                    }
+                }
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+
+    // '.' [whitespace] (identifier | '<') [whitespace] '('
+    private static boolean isInvocationAfterDot(ByteBuffer source, int length, int i) {
+        i = skipWhitespace(source, length, i);
+        if (i >= length) {
+            return false;
+        }
+        if (source.get(i) == '<' || source.get(i) == '/') {
+            return true; // Explicit type arguments, or a comment we do not try to read
+        }
+        if (!isIdentifierStart(source.get(i))) {
+            return false; // Number literal such as 1.5, or "..."
+        }
+        while (i < length && isIdentifierPart(source.get(i))) {
+            i++;
+        }
+        i = skipWhitespace(source, length, i);
+        return i < length && (source.get(i) == '(' || source.get(i) == '/');
+    }
+
+    private static int skipWhitespace(ByteBuffer source, int length, int i) {
+        while (i < length && (source.get(i) == ' ' || source.get(i) == '\t' || source.get(i) == '\n' || source.get(i) == '\r' || source.get(i) == '\f')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipLineComment(ByteBuffer source, int length, int i) {
+        while (i < length && source.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipBlockComment(ByteBuffer source, int length, int i) {
+        while (i + 1 < length && !(source.get(i) == '*' && source.get(i + 1) == '/')) {
+            i++;
+        }
+        return i + 2;
+    }
+
+    private static int skipLiteral(ByteBuffer source, int length, int i, byte quote) {
+        while (i < length && source.get(i) != quote && source.get(i) != '\n') {
+            i += source.get(i) == '\\' ? 2 : 1;
+        }
+        return i + 1;
+    }
+
+    // Non-ASCII bytes (UTF-8 sequences) are treated as identifier characters
+    private static boolean isIdentifierStart(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c < 0;
+    }
+
+    private static boolean isIdentifierPart(byte c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isWord(ByteBuffer source, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (source.get(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+package MAIN;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Interns class names to dense int ids (0, 1, 2, ...) so that edges can be stored as primitive pairs.
+// Lookups of known names are lock-free, only the first occurrence of a name takes the lock.
+public class SymbolTable {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private volatile int size = 0;
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        return internSlow(name);
+    }
+
+    private synchronized int internSlow(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int newId = size;
+        if (newId == names.length) {
+            names = Arrays.copyOf(names, newId * 2);
+        }
+        names[newId] = name;
+        size = newId + 1; // Publish the name before the id becomes visible
+        ids.put(name, newId);
+        return newId;
+    }
+
+    // Id of a name, or -1 if it was never interned
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    public String nameOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown symbol id: " + id);
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,84 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgglomerativeClusteringTest {
+
+    // Random sparse graph: every class calls a few random others
+    static CouplingGraph randomGraph(int classes, int callsPerClass, long seed) {
+        Random random = new Random(seed);
+        CouplingStore store = new CouplingStore();
+        for (int c = 0; c < classes; c++) {
+            FileAnalysis analysis = new FileAnalysis();
+            for (int call = 0; call < callsPerClass; call++) {
+                analysis.recordCoupling("C" + c, "C" + random.nextInt(classes));
+            }
+            store.add(analysis);
+        }
+        return store.toGraph();
+    }
+
+    // Apart from growing the candidate heap, the sequential merge loop must not allocate
+    @Test
+    void sequentialMergeLoopDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(threads);
+        long thread = Thread.currentThread().getId();
+        CouplingGraph graph = randomGraph(2000, 8, 7);
+
+        for (int round = 0; round < 4; round++) { // Round 0 warms up (one-time initialization allocates a little)
+            AgglomerativeClustering engine = new AgglomerativeClustering(graph);
+            long growthBefore = engine.heapGrowthBytes();
+            long before = threads.getThreadAllocatedBytes(thread);
+            engine.run(Double.NEGATIVE_INFINITY, 1, null);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            long growth = engine.heapGrowthBytes() - growthBefore;
+
+            assertEquals(1, engine.activeCount());
+            if (round == 0) {
+                continue;
+            }
+            assertTrue(allocated - growth < 1024, "Merge loop allocated " + (allocated - growth)
+                    + " bytes besides " + growth + " bytes of heap growth");
+        }
+    }
+
+    // Large enough for several initial tiles and for parallel row updates: the merges must be exactly the sequential ones
+    @Test
+    void parallelMergesMatchSequential() {
+        CouplingGraph graph = randomGraph(5000, 4, 11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (double CP : new double[] { Double.NEGATIVE_INFINITY, 0.0 }) {
+                List<String> sequential = merges(new AgglomerativeClustering(graph), CP, graph.size() / 2);
+                List<String> parallel = merges(new AgglomerativeClustering(graph, pool), CP, graph.size() / 2);
+
+                assertFalse(sequential.isEmpty());
+                assertEquals(sequential, parallel, "CP " + CP);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> merges(AgglomerativeClustering engine, double CP, int maxModules) {
+        List<String> merges = new ArrayList<>();
+        engine.run(CP, maxModules, (clusterA, clusterB, coupling, forced) ->
+                merges.add(clusterA + " " + clusterB + " " + coupling + (forced ? " forced" : "")));
+        return merges;
+    }
+
+    private static void assumeAllocationCounting(com.sun.management.ThreadMXBean threads) {
+        org.junit.jupiter.api.Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        threads.getThreadAllocatedBytes(Thread.currentThread().getId()); // First call initializes the counter
+    }
+}
@@ -0,0 +1,98 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisDaemonTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path project;
+
+    // Files created, modified, broken and deleted while the daemon runs are re-parsed and show in its answers
+    @Test
+    void changesAreAppliedAndServed() throws Exception {
+        writeClass(project.resolve("p0"), "A", "B.b(); B.b();");
+        writeClass(project.resolve("p0"), "B", "");
+
+        try (AnalysisDaemon daemon = new AnalysisDaemon(project, 2)) {
+            daemon.start(0);
+            String base = "http://localhost:" + daemon.getPort();
+            assertEquals(2, number(get(base + "/status"), "invocations"));
+            assertTrue(get(base + "/coupling?class=A&to=B").contains("\"coupling\":1.0"));
+
+            writeClass(project.resolve("p0"), "A", "B.b();");
+            awaitStatus(base, "invocations", 1);
+
+            // A file that no longer parses keeps its last counts and is reported as failed
+            Files.write(project.resolve("p0").resolve("A.java"), new byte[] { 'c', 'l', 'a', 's', 's', ' ', (byte) 0xC3, (byte) 0x28 });
+            awaitStatus(base, "failed", 1);
+            assertEquals(1, number(get(base + "/status"), "invocations"));
+            assertTrue(daemon.getStore().getClassMethodsMap().containsKey("A"));
+
+            Files.delete(project.resolve("p0").resolve("A.java"));
+            awaitStatus(base, "failed", 0);
+            awaitStatus(base, "invocations", 0);
+            assertFalse(daemon.getStore().getClassMethodsMap().containsKey("A"));
+
+            // A new directory is walked and its files parsed
+            Path created = Files.createDirectory(project.resolve("p1"));
+            writeClass(created, "C", "B.b(); B.b(); B.b();");
+            awaitStatus(base, "invocations", 3);
+            assertTrue(get(base + "/coupling?class=C").contains("\"B\":"));
+            assertNull(get(base + "/coupling?class=A"));
+        }
+    }
+
+    private static void writeClass(Path directory, String name, String body) throws IOException {
+        Files.createDirectories(directory);
+        String source = "package " + directory.getFileName() + ";\n\npublic class " + name + " {\n"
+                + "    public static void " + name.toLowerCase() + "() {\n        " + body + "\n    }\n}\n";
+        Files.write(directory.resolve(name + ".java"), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitStatus(String base, String field, long expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        long value;
+        while ((value = number(get(base + "/status"), field)) != expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(field + " is " + value + " instead of " + expected);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static long number(String json, String field) {
+        Matcher matcher = Pattern.compile("\"" + field + "\":(-?\\d+)").matcher(json);
+        assertTrue(matcher.find(), field + " missing in " + json);
+        return Long.parseLong(matcher.group(1));
+    }
+
+    // Body of a GET, null for a 404
+    private static String get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            if (connection.getResponseCode() == 404) {
+                return null;
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
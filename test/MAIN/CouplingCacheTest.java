@@ -0,0 +1,129 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouplingCacheTest {
+
+    private static final int CLASSES = 40;
+
+    @TempDir
+    Path directory;
+
+    // A second run over unchanged files re-uses every entry and finds the counts of the first one
+    @Test
+    void warmRunReusesEveryFile() throws IOException {
+        Path project = generate();
+        Path cacheFile = directory.resolve("cache.bin");
+
+        Parser cold = analyze(project, cacheFile);
+        assertEquals(0, cold.getMetrics().getFilesFromCache());
+        assertEquals(CLASSES, cold.getMetrics().getFilesCacheMissed());
+
+        Parser warm = analyze(project, cacheFile);
+        assertEquals(CLASSES, warm.getMetrics().getFilesFromCache());
+        assertEquals(0, warm.getMetrics().getFilesCacheMissed());
+        assertEquals(0, warm.getMetrics().getFilesParsed());
+        assertSameStore(cold, warm);
+    }
+
+    // An edited file is parsed again, also when its size did not change and only its content hash tells it apart;
+    // a file only touched keeps its entry
+    @Test
+    void editedFileInvalidatesItsEntry() throws IOException {
+        Path project = generate();
+        Path cacheFile = directory.resolve("cache.bin");
+        analyze(project, cacheFile);
+
+        Path edited = project.resolve("p1").resolve("C1.java");
+        String source = new String(Files.readAllBytes(edited), StandardCharsets.UTF_8);
+        String changed = source.replaceFirst("\\.m(\\d)\\(\\)", ".m9()"); // Same length, one call to an unknown method
+        assertNotEquals(source, changed);
+        Files.write(edited, changed.getBytes(StandardCharsets.UTF_8));
+        bumpModificationTime(edited);
+        bumpModificationTime(project.resolve("p2").resolve("C2.java"));
+
+        Parser parser = analyze(project, cacheFile);
+        assertEquals(1, parser.getMetrics().getFilesCacheMissed());
+        assertEquals(CLASSES - 1, parser.getMetrics().getFilesFromCache());
+        assertSameStore(analyze(project, null), parser);
+    }
+
+    // A run over a few files keeps the entries of the others, so the next full run still re-uses them
+    @Test
+    void partialRunKeepsOtherEntries() throws IOException {
+        Path project = generate();
+        Path cacheFile = directory.resolve("cache.bin");
+        analyze(project, cacheFile);
+
+        Path file = project.resolve("p3").resolve("C3.java");
+        Parser partial = analyze(file, cacheFile);
+        assertEquals(1, partial.getMetrics().getFilesFromCache());
+        assertTrue(partial.getStore().getUserDefinedClasses().contains("C3"));
+        assertFalse(partial.getStore().getUserDefinedClasses().contains("C4"));
+
+        Parser full = analyze(project, cacheFile);
+        assertEquals(CLASSES, full.getMetrics().getFilesFromCache());
+        assertEquals(0, full.getMetrics().getFilesCacheMissed());
+    }
+
+    // A truncated or overwritten cache file is ignored: every file is parsed and the counts are those of a run
+    // without cache
+    @Test
+    void corruptCacheFallsBackToFullParse() throws IOException {
+        Path project = generate();
+        Path cacheFile = directory.resolve("cache.bin");
+        Parser expected = analyze(project, null);
+
+        analyze(project, cacheFile);
+        byte[] content = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(content, content.length / 2));
+        Parser truncated = analyze(project, cacheFile);
+        assertEquals(0, truncated.getMetrics().getFilesFromCache());
+        assertEquals(CLASSES, truncated.getMetrics().getFilesCacheMissed());
+        assertSameStore(expected, truncated);
+
+        // The run above rewrote a valid cache; now damage the string lengths inside it
+        content = Files.readAllBytes(cacheFile);
+        for (int i = 12; i < content.length; i += 7) {
+            content[i] = (byte) 0xFF;
+        }
+        Files.write(cacheFile, content);
+        Parser overwritten = analyze(project, cacheFile);
+        assertEquals(0, overwritten.getMetrics().getFilesFromCache());
+        assertSameStore(expected, overwritten);
+    }
+
+    private Path generate() throws IOException {
+        Path project = Files.createDirectory(directory.resolve("project"));
+        TestSources.generateProject(project, CLASSES, 9, 7);
+        return project;
+    }
+
+    private static Parser analyze(Path path, Path cacheFile) {
+        Parser parser = new Parser();
+        parser.analyzePaths(Collections.singletonList(path), 1, cacheFile);
+        return parser;
+    }
+
+    private static void bumpModificationTime(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+    }
+
+    private static void assertSameStore(Parser expected, Parser actual) {
+        assertEquals(ParserTest.couplings(expected.getStore()), ParserTest.couplings(actual.getStore()));
+        assertEquals(expected.getStore().getTotalCouplingCount(), actual.getStore().getTotalCouplingCount());
+        assertEquals(expected.getStore().getUserDefinedClasses(), actual.getStore().getUserDefinedClasses());
+        assertEquals(expected.getStore().getClassMethodsMap(), actual.getStore().getClassMethodsMap());
+    }
+}
@@ -0,0 +1,32 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouplingGraphTest {
+
+    // A pair given in one direction only is stored in both, a pair given in both keeps the larger metric
+    @Test
+    void metricsMapIsSymmetrized() {
+        Map<String, Map<String, Double>> metrics = new HashMap<>();
+        metrics.computeIfAbsent("A", k -> new HashMap<>()).put("B", 0.25);
+        metrics.computeIfAbsent("B", k -> new HashMap<>()).put("A", 0.5);
+        metrics.computeIfAbsent("C", k -> new HashMap<>()).put("A", 0.125);
+
+        CouplingGraph graph = CouplingGraph.fromMetrics(metrics);
+        int a = graph.indexOf("A");
+        int b = graph.indexOf("B");
+        int c = graph.indexOf("C");
+
+        assertEquals(0.5, graph.weight(a, b));
+        assertEquals(0.5, graph.weight(b, a));
+        assertEquals(0.125, graph.weight(a, c));
+        assertEquals(0.125, graph.weight(c, a));
+        assertEquals(0.0, graph.weight(b, c));
+        assertEquals(2, graph.neighborEnd(a) - graph.neighborStart(a));
+    }
+}
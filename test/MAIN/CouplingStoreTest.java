@@ -0,0 +1,100 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouplingStoreTest {
+
+    // Files replaced and removed concurrently, like the workers of the daemon do, must leave the store equal to
+    // one built from the remaining files alone. Few class and method names, so many files declare the same ones.
+    @Test
+    void concurrentAddAndRemoveMatchSequentialStore() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Random random = new Random(18);
+            for (int trial = 0; trial < 200; trial++) {
+                int fileCount = 20 + random.nextInt(20);
+                List<FileAnalysis> current = new ArrayList<>();
+                CouplingStore store = new CouplingStore();
+                for (int file = 0; file < fileCount; file++) {
+                    FileAnalysis analysis = randomFile(random);
+                    current.add(analysis);
+                    store.add(analysis);
+                }
+
+                // Every file is replaced by a new version, deleted or left alone, all at the same time
+                List<FileAnalysis> remaining = new ArrayList<>();
+                List<Runnable> changes = new ArrayList<>();
+                for (FileAnalysis old : current) {
+                    int change = random.nextInt(3);
+                    if (change == 0) {
+                        FileAnalysis fresh = randomFile(random);
+                        remaining.add(fresh);
+                        changes.add(() -> {
+                            store.add(fresh);
+                            store.remove(old);
+                        });
+                    } else if (change == 1) {
+                        changes.add(() -> store.remove(old));
+                    } else {
+                        remaining.add(old);
+                    }
+                }
+                List<Future<?>> futures = new ArrayList<>();
+                for (Runnable change : changes) {
+                    futures.add(executor.submit(change));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+
+                CouplingStore expected = new CouplingStore();
+                for (FileAnalysis analysis : remaining) {
+                    expected.add(analysis);
+                }
+                String message = "trial " + trial;
+                assertEquals(expected.getClassMethodsMap(), store.getClassMethodsMap(), message);
+                assertEquals(expected.getUserDefinedClasses(), store.getUserDefinedClasses(), message);
+                assertEquals(ParserTest.couplings(expected), ParserTest.couplings(store), message);
+                assertEquals(expected.getTotalCouplingCount(), store.getTotalCouplingCount(), message);
+                assertEquals(methodCalls(expected), methodCalls(store), message);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static FileAnalysis randomFile(Random random) {
+        FileAnalysis analysis = new FileAnalysis();
+        int classes = 1 + random.nextInt(3);
+        for (int c = 0; c < classes; c++) {
+            String className = "C" + random.nextInt(8);
+            Set<String> methods = analysis.classMethodsMap.computeIfAbsent(className, k -> new HashSet<>());
+            for (int m = random.nextInt(4); m > 0; m--) {
+                methods.add("m" + random.nextInt(4));
+            }
+            if (random.nextBoolean()) {
+                analysis.userDefinedClasses.add(className);
+            }
+            for (int call = random.nextInt(5); call > 0; call--) {
+                String called = "C" + random.nextInt(8);
+                analysis.recordCoupling(className, called);
+                analysis.recordMethodCall(className, "m" + random.nextInt(4), called, "m" + random.nextInt(4));
+            }
+        }
+        return analysis;
+    }
+
+    private static Map<String, Long> methodCalls(CouplingStore store) {
+        SymbolTable symbols = store.getMethodSymbols();
+        Map<String, Long> calls = new HashMap<>();
+        store.forEachMethodCall((from, to, count) -> calls.merge(symbols.nameOf(from) + " -> " + symbols.nameOf(to), count, Long::sum));
+        return calls;
+    }
+}
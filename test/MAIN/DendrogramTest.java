@@ -0,0 +1,49 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DendrogramTest {
+
+    @TempDir
+    Path directory;
+
+    // A saved dendrogram is only valid for the project it was computed from, as long as its files are unchanged
+    @Test
+    void savedDendrogramMatchesOnlyItsUnchangedProject() throws IOException {
+        Path project = Files.createDirectory(directory.resolve("project"));
+        Path other = Files.createDirectory(directory.resolve("other"));
+        TestSources.generateProject(project, 30, 6, 3);
+        TestSources.generateProject(other, 30, 6, 3);
+
+        long fingerprint = Dendrogram.sourceFingerprint(project);
+        Dendrogram built = Dendrogram.build(AgglomerativeClusteringTest.randomGraph(30, 4, 5), null, null)
+                .withSource(project, fingerprint);
+        Path file = directory.resolve("clustering.dendrogram");
+        built.save(file);
+        Dendrogram loaded = Dendrogram.load(file);
+
+        assertTrue(loaded.matches(project.resolve("p0").resolve(".."), fingerprint));
+        assertEquals(built.mergeCount(), loaded.mergeCount());
+        for (int i = 0; i < built.mergeCount(); i++) {
+            assertEquals(built.mergeA(i), loaded.mergeA(i));
+            assertEquals(built.mergeB(i), loaded.mergeB(i));
+            assertEquals(built.height(i), loaded.height(i));
+        }
+
+        assertFalse(loaded.matches(other, Dendrogram.sourceFingerprint(other)));
+        Path source = project.resolve("p1").resolve("C1.java");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 1000));
+        assertFalse(loaded.matches(project, Dendrogram.sourceFingerprint(project)));
+        TestSources.writeClass(project, 30, 31, 6, new Random(9));
+        assertNotEquals(fingerprint, Dendrogram.sourceFingerprint(project));
+    }
+}
@@ -0,0 +1,76 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalCouplingAggregatorTest {
+
+    @TempDir
+    Path directory;
+
+    // A run file that cannot be written must fail finish(), not be lost in the worker that called add()
+    @Test
+    void spillFailureIsThrownByFinish() throws IOException {
+        Path runs = directory.resolve("runs");
+        try (ExternalCouplingAggregator aggregator = new ExternalCouplingAggregator(1, runs)) {
+            Files.delete(runs);
+            Files.createFile(runs); // Run files can no longer be created
+
+            FileAnalysis analysis = new FileAnalysis();
+            analysis.recordCoupling("A", "B");
+            aggregator.add(analysis); // Above the budget: spills, and fails
+            aggregator.add(analysis);
+
+            IOException thrown = assertThrows(IOException.class, () -> aggregator.finish((first, second, invocations, coupling) -> {
+                fail("No pair should be produced after a failed spill");
+            }));
+            assertNotNull(thrown.getCause());
+            Files.delete(runs);
+            Files.createDirectory(runs); // Back for close()
+        }
+    }
+
+    // A budget of a few entries spills many runs, merged in several passes of two, into the metrics of the store
+    @Test
+    void multiPassMergeMatchesStoreGraph() throws IOException {
+        Path project = Files.createDirectory(directory.resolve("project"));
+        TestSources.generateProject(project, 120, 8, 11);
+
+        Parser parser = new Parser();
+        parser.analyzePaths(Collections.singletonList(project), 1, null);
+        CouplingGraph graph = parser.getStore().toGraph();
+
+        Map<String, Double> merged = new HashMap<>();
+        try (ExternalCouplingAggregator aggregator = new ExternalCouplingAggregator(4096, directory.resolve("runs"))) {
+            new Parser().forEachFileAnalysis(project.toString(), 4, aggregator::add);
+            assertTrue(aggregator.getRunCount() > 4, "only " + aggregator.getRunCount() + " runs");
+            aggregator.finish((first, second, invocations, coupling) -> {
+                assertTrue(first.compareTo(second) <= 0);
+                assertNull(merged.put(first + " " + second, coupling), "pair produced twice");
+            });
+        }
+
+        int pairs = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            for (int position = graph.neighborStart(node); position < graph.neighborEnd(node); position++) {
+                int other = graph.neighbor(position);
+                if (other < node) {
+                    continue;
+                }
+                pairs++;
+                String key = graph.name(node) + " " + graph.name(other);
+                assertEquals(graph.weightAt(position), merged.get(key), key);
+            }
+        }
+        assertEquals(pairs, merged.size());
+    }
+}
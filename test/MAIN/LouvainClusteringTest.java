@@ -0,0 +1,92 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LouvainClusteringTest {
+
+    private static final int GROUPS = 5;
+    private static final int GROUP_SIZE = 12;
+
+    // Groups of classes calling each other a lot, joined by single calls: each group must come out as one cluster
+    @Test
+    void plantedCommunitiesAreFound() {
+        CouplingGraph graph = plantedGraph(3);
+        ClusteringResult result = new LouvainClustering().cluster(graph);
+
+        Set<Set<String>> expected = new HashSet<>();
+        for (int group = 0; group < GROUPS; group++) {
+            Set<String> classes = new HashSet<>();
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                classes.add(name(group, i));
+            }
+            expected.add(classes);
+        }
+        Set<Set<String>> found = new HashSet<>();
+        for (HierarchicalClustering.Cluster cluster : result.getClusters()) {
+            found.add(cluster.classes);
+        }
+        assertEquals(expected, found);
+
+        int[] planted = new int[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            planted[node] = graph.name(node).charAt(1) - '0';
+        }
+        double plantedModularity = ClusteringResult.of(graph, planted).getModularity();
+        assertTrue(result.getModularity() > 0.5, "Q = " + result.getModularity());
+        assertEquals(plantedModularity, result.getModularity(), 1e-9);
+        for (int cluster = 0; cluster < result.getClusters().size(); cluster++) {
+            assertTrue(result.getClusterModularity(cluster) > 0);
+        }
+    }
+
+    // Same partition and modularity on every run, also on a graph built again from the same couplings
+    @Test
+    void repeatedRunsGiveTheSameResult() {
+        CouplingGraph graph = AgglomerativeClusteringTest.randomGraph(2000, 4, 16);
+        ClusteringResult first = new LouvainClustering().cluster(graph);
+        assertTrue(first.getModularity() > 0);
+
+        ClusteringResult again = new LouvainClustering().cluster(graph);
+        ClusteringResult rebuilt = new LouvainClustering().cluster(AgglomerativeClusteringTest.randomGraph(2000, 4, 16));
+        for (ClusteringResult other : Arrays.asList(again, rebuilt)) {
+            assertEquals(first.getModularity(), other.getModularity());
+            assertEquals(first.getClusters().size(), other.getClusters().size());
+            for (int node = 0; node < graph.size(); node++) {
+                assertEquals(first.clusterOf(node), other.clusterOf(node));
+            }
+        }
+    }
+
+    // G<group>_<i> calls a few random classes of its group many times, and G<group>_0 calls G<group + 1>_0 once
+    private static CouplingGraph plantedGraph(long seed) {
+        Random random = new Random(seed);
+        CouplingStore store = new CouplingStore();
+        for (int group = 0; group < GROUPS; group++) {
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                FileAnalysis analysis = new FileAnalysis();
+                for (int call = 0; call < 4; call++) {
+                    String called = name(group, (i + 1 + random.nextInt(GROUP_SIZE - 1)) % GROUP_SIZE);
+                    for (int repeat = 0; repeat < 5; repeat++) {
+                        analysis.recordCoupling(name(group, i), called);
+                    }
+                }
+                if (i == 0) {
+                    analysis.recordCoupling(name(group, 0), name((group + 1) % GROUPS, 0));
+                }
+                store.add(analysis);
+            }
+        }
+        return store.toGraph();
+    }
+
+    private static String name(int group, int i) {
+        return "G" + group + "_" + i;
+    }
+}
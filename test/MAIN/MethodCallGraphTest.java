@@ -0,0 +1,75 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MethodCallGraphTest {
+
+    @TempDir
+    Path project;
+
+    // Fan-in/out, callers, call counts and reachability of a small parsed project with a cycle and a recursion
+    @Test
+    void callGraphOfParsedProject() throws IOException {
+        writeClass("A", "    public static void a() { B.b(); B.b(); C.c(); }\n");
+        writeClass("B", "    public static void b() { C.c(); }\n");
+        writeClass("C", "    public static void c() { }\n    public static void d() { A.a(); }\n");
+        writeClass("D", "    public static void e() { }\n");
+        writeClass("E", "    public static void f() { E.f(); }\n");
+
+        Parser parser = new Parser();
+        parser.setRecordMethodCalls(true);
+        parser.analyzePaths(Collections.singletonList(project), 1, null);
+        MethodCallGraph graph = parser.getStore().toMethodCallGraph();
+
+        int a = graph.indexOf("A", "a");
+        int b = graph.indexOf("B", "b");
+        int c = graph.indexOf("C", "c");
+        int d = graph.indexOf("C", "d");
+        int e = graph.indexOf("D", "e");
+        int f = graph.indexOf("E", "f");
+        assertEquals(6, graph.size());
+        assertEquals(-1, graph.indexOf("A", "missing"));
+        assertArrayEquals(new int[] { c, d }, graph.methodsOf("C"));
+
+        assertEquals(2, graph.fanOut(a));
+        assertEquals(2, graph.callCount(a, b));
+        assertEquals(1, graph.callCount(a, c));
+        assertEquals(0, graph.callCount(b, a));
+        assertArrayEquals(new int[] { b, c }, graph.calleesOf(a));
+        assertEquals(2, graph.fanIn(c));
+        assertArrayEquals(new int[] { a, b }, graph.callersOf(c));
+        assertEquals(0, graph.fanIn(e));
+        assertEquals(0, graph.fanOut(e));
+
+        assertEquals(bits(b, c), graph.reachableFrom(a)); // Not a itself, nothing calls back from c
+        assertEquals(bits(a, b, c), graph.reachableFrom(d));
+        assertEquals(bits(a, b, d), graph.reachingTo(c));
+        assertEquals(bits(f), graph.reachableFrom(f)); // Recursion
+        assertEquals(bits(), graph.reachableFrom(e));
+    }
+
+    private void writeClass(String name, String methods) throws IOException {
+        Path file = project.resolve("p").resolve(name + ".java");
+        Files.createDirectories(file.getParent());
+        String source = "package p;\n\npublic class " + name + " {\n" + methods + "}\n";
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static BitSet bits(int... methods) {
+        BitSet bits = new BitSet();
+        for (int method : methods) {
+            bits.set(method);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,105 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserTest {
+
+    @TempDir
+    Path project;
+
+    // Counts of the parallel mode must equal the sequential ones exactly
+    @Test
+    void parallelAnalysisMatchesSequential() throws IOException {
+        TestSources.generateProject(project, 300, 30, 42);
+        List<Path> roots = Arrays.asList(project, Paths.get("src"));
+
+        Parser sequential = new Parser();
+        sequential.analyzePaths(roots, 1, null);
+        for (int threads : new int[] { 2, 4, 8 }) {
+            Parser parallel = new Parser();
+            parallel.analyzePaths(roots, threads, null);
+
+            assertEquals(couplings(sequential.getStore()), couplings(parallel.getStore()), threads + " threads");
+            assertEquals(sequential.getStore().getTotalCouplingCount(), parallel.getStore().getTotalCouplingCount());
+            assertEquals(sequential.getStore().getUserDefinedClasses(), parallel.getStore().getUserDefinedClasses());
+            assertEquals(sequential.getStore().getClassMethodsMap(), parallel.getStore().getClassMethodsMap());
+            assertEquals(0, parallel.getMetrics().getFilesFailed());
+        }
+        assertTrue(sequential.getStore().getUserDefinedClasses().contains("C299"));
+        assertTrue(sequential.getStore().getTotalCouplingCount() > 0);
+    }
+
+    // A source that is not valid UTF-8 is reported as failed (as Files.readString did), the others still count
+    @Test
+    void malformedSourceIsReportedAsFailed() throws IOException {
+        TestSources.generateProject(project, 20, 6, 1);
+        Path malformed = project.resolve("p0").resolve("Broken.java");
+        Files.write(malformed, new byte[] { 'c', 'l', 'a', 's', 's', ' ', (byte) 0xC3, (byte) 0x28, ' ', '{', '}' });
+
+        Parser parser = new Parser();
+        parser.analyzePaths(Collections.singletonList(project), 2, null);
+
+        assertEquals(1, parser.getMetrics().getFilesFailed());
+        assertEquals(20, parser.getStore().getUserDefinedClasses().size());
+    }
+
+    // An exception of the sink in a worker reaches the caller instead of vanishing in the executor
+    @Test
+    void sinkFailureInWorkerIsRethrown() throws IOException {
+        TestSources.generateProject(project, 50, 6, 2);
+        IllegalStateException failure = new IllegalStateException("sink failed");
+        AtomicInteger calls = new AtomicInteger();
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> new Parser().forEachFileAnalysis(project.toString(), 4, analysis -> {
+                    if (calls.incrementAndGet() == 10) {
+                        throw failure;
+                    }
+                }));
+        assertSame(failure, thrown);
+    }
+
+    // With bindings, calls through a variable and inherited static methods go to the class declaring the method
+    @Test
+    void bindingsAttributeCouplingsToDeclaringClass() throws IOException {
+        write("p/Base.java", "package p;\n\npublic class Base {\n    public static void helper() { }\n    public void run() { }\n}\n");
+        write("p/Sub.java", "package p;\n\npublic class Sub extends Base {\n}\n");
+        write("p/User.java", "package p;\n\npublic class User {\n    void use() {\n        Base b = new Sub();\n"
+                + "        b.run();\n        b.run();\n        Sub.helper();\n        String.valueOf(1);\n    }\n}\n");
+
+        for (int threads : new int[] { 1, 2 }) {
+            Parser parser = new Parser();
+            parser.analyzeProjectWithBindings(project.toString(), null, null, threads);
+
+            Map<String, Long> expected = new HashMap<>();
+            expected.put("User -> Base", 3L);
+            assertEquals(expected, couplings(parser.getStore()), threads + " threads");
+            assertEquals(3, parser.getStore().getTotalCouplingCount());
+            assertEquals(0, parser.getMetrics().getFilesFailed());
+        }
+    }
+
+    private void write(String relativePath, String source) throws IOException {
+        Path file = project.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    // Class pair -> invocation count, by name
+    static Map<String, Long> couplings(CouplingStore store) {
+        SymbolTable symbols = store.getSymbols();
+        Map<String, Long> couplings = new HashMap<>();
+        store.forEachCoupling((from, to, count) -> couplings.merge(symbols.nameOf(from) + " -> " + symbols.nameOf(to), count, Long::sum));
+        return couplings;
+    }
+}
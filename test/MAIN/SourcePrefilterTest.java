@@ -0,0 +1,114 @@
+package MAIN;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourcePrefilterTest {
+
+    @TempDir
+    Path directory;
+
+    // Classes and methods declared inside a method body need the body to be parsed
+    @Test
+    void anonymousAndLocalClasses() throws IOException {
+        assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public void a() {\n"
+                + "        Runnable r = new Runnable() { public void run() { } };\n"
+                + "    }\n"
+                + "}\n");
+        assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public void a() {\n"
+                + "        class Local { void local() { } }\n"
+                + "    }\n"
+                + "}\n");
+    }
+
+    // X.class is no invocation, X.class.getName() is one
+    @Test
+    void classLiterals() throws IOException {
+        assertPrefilteredMatchesFullParse(false, "public class A {\n"
+                + "    Object type = B.class;\n"
+                + "    public Object a() { return java.util.List.class; }\n"
+                + "}\n");
+        assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public String a() { return B.class.getName(); }\n"
+                + "}\n");
+    }
+
+    // A comment between the '.' and the method name, or between the name and '(', still makes a coupling
+    @Test
+    void commentsInsideInvocations() throws IOException {
+        assertCoupled(assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public void a() { B./* block */b(); }\n"
+                + "}\n"));
+        assertCoupled(assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public void a() { B.// line\n b(); }\n"
+                + "}\n"));
+        assertCoupled(assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public void a() { B.b/* block */(); }\n"
+                + "}\n"));
+        // Dots and parentheses inside comments and literals alone are not invocations
+        assertPrefilteredMatchesFullParse(false, "public class A {\n"
+                + "    // B.b();\n"
+                + "    /* new C.c() { } */\n"
+                + "    public String a() { return \"B.b() new class\" + 'x'; }\n"
+                + "}\n");
+    }
+
+    // Unicode escapes can spell any token, including '.' and 'new'
+    @Test
+    void unicodeEscapes() throws IOException {
+        assertCoupled(assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public void a() { B\\u002eb(); }\n"
+                + "}\n"));
+        assertPrefilteredMatchesFullParse(true, "public class A {\n"
+                + "    public void a() { Runnable r = \\u006eew Runnable() { public void run() { } }; }\n"
+                + "}\n");
+        // Inside a literal an escape is only a character
+        assertPrefilteredMatchesFullParse(false, "public class A {\n"
+                + "    public String a() { return \"\\u0041\"; }\n"
+                + "}\n");
+    }
+
+    // Parse the source as a file with and without the pre-filter: the pre-filter must decide as expected and
+    // both parses must give the same classes, methods and couplings. Returns the full parse.
+    private FileAnalysis assertPrefilteredMatchesFullParse(boolean needsFullParse, String source) throws IOException {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        assertEquals(needsFullParse, SourcePrefilter.needsFullParse(bytes, bytes.length), source);
+
+        Path file = directory.resolve("A.java");
+        Files.write(file, bytes);
+        Parser prefiltering = new Parser();
+        FileAnalysis prefiltered = prefiltering.parseFile(file);
+        Parser full = new Parser();
+        full.setPrefilter(false);
+        FileAnalysis expected = full.parseFile(file);
+
+        assertEquals(needsFullParse ? 0 : 1, prefiltering.getMetrics().getFilesPrefiltered(), source);
+        assertEquals(expected.classMethodsMap, prefiltered.classMethodsMap, source);
+        assertEquals(expected.userDefinedClasses, prefiltered.userDefinedClasses, source);
+        assertEquals(couplings(expected), couplings(prefiltered), source);
+        assertEquals(expected.totalCouplingCount, prefiltered.totalCouplingCount, source);
+        return expected;
+    }
+
+    private static void assertCoupled(FileAnalysis analysis) {
+        assertEquals(Map.of("A -> B", 1L), couplings(analysis));
+    }
+
+    private static Map<String, Long> couplings(FileAnalysis analysis) {
+        Map<String, Long> couplings = new HashMap<>();
+        analysis.couplingCount.forEach((from, to, count) -> couplings.merge(analysis.symbols.nameOf(from) + " -> "
+                + analysis.symbols.nameOf(to), count, Long::sum));
+        return couplings;
+    }
+}
@@ -0,0 +1,42 @@
+package MAIN;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Generated Java projects for the tests: classes C0..C(n-1) spread over a few packages, whose methods call
+// static methods of random other classes (C3.m1()), which the parser counts as couplings.
+final class TestSources {
+
+    private TestSources() {
+    }
+
+    static void generateProject(Path root, int classes, int callsPerClass, long seed) throws IOException {
+        Random random = new Random(seed);
+        for (int c = 0; c < classes; c++) {
+            writeClass(root, c, classes, callsPerClass, random);
+        }
+    }
+
+    static Path writeClass(Path root, int c, int classes, int callsPerClass, Random random) throws IOException {
+        String pkg = "p" + (c % 4);
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(pkg).append(";\n\n");
+        source.append("public class C").append(c).append(" {\n");
+        for (int m = 0; m < 3; m++) {
+            source.append("    public static void m").append(m).append("() {\n");
+            for (int call = 0; call < callsPerClass / 3; call++) {
+                source.append("        C").append(random.nextInt(classes)).append(".m").append(random.nextInt(3)).append("();\n");
+            }
+            source.append("    }\n");
+        }
+        source.append("}\n");
+
+        Path file = root.resolve(pkg).resolve("C" + c + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}